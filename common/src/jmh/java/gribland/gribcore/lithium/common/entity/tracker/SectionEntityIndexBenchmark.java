@@ -0,0 +1,144 @@
+package gribland.gribcore.lithium.common.entity.tracker;
+
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
+import net.minecraft.core.SectionPos;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * The closest entity query of an AI goal in a crowded area: every entity is within a few sections of the querying one,
+ * and the filter is expensive and rejects most entities, like the line of sight check of a targeting condition would.
+ * Compares the section index with the scan over every tracked entity it replaced.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SectionEntityIndexBenchmark {
+    private static final int QUERIES = 64;
+
+    // The area entities are spread over, about the size of a villager hall or the kill chamber of a mob farm
+    private static final int AREA_XZ = 48;
+    private static final int AREA_Y = 16;
+
+    private static final float RANGE = 16.0F;
+
+    @Param({"50", "500", "5000"})
+    public int entities;
+
+    // The share of entities the filter accepts, in percent
+    @Param({"10"})
+    public int acceptance;
+
+    private final Random random = new Random(0L);
+
+    private Set<Point> set;
+    private SectionEntityIndex<Point> index;
+    private Point[] queries;
+    private Predicate<Point> filter;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.random.setSeed(0L);
+        this.set = new ReferenceOpenHashSet<>();
+        this.index = new SectionEntityIndex<>(Point::distanceToSqr);
+
+        for (int i = 0; i < this.entities; i++) {
+            Point point = new Point(this.random.nextDouble() * AREA_XZ, 64.0D + this.random.nextDouble() * AREA_Y,
+                    this.random.nextDouble() * AREA_XZ, this.random.nextInt(100) < this.acceptance);
+
+            this.set.add(point);
+            this.index.add(point, point.getSection());
+        }
+
+        this.queries = this.set.toArray(new Point[0]);
+
+        for (int i = this.queries.length - 1; i > 0; i--) {
+            int j = this.random.nextInt(i + 1);
+            Point swap = this.queries[i];
+            this.queries[i] = this.queries[j];
+            this.queries[j] = swap;
+        }
+
+        this.filter = point -> {
+            Blackhole.consumeCPU(64);
+            return point.visible;
+        };
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(QUERIES)
+    public void scan(Blackhole blackhole) {
+        for (int i = 0; i < QUERIES; i++) {
+            Point self = this.queries[i % this.queries.length];
+            blackhole.consume(this.findClosestByScan(self.x, self.y, self.z));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(QUERIES)
+    public void index(Blackhole blackhole) {
+        for (int i = 0; i < QUERIES; i++) {
+            Point self = this.queries[i % this.queries.length];
+            blackhole.consume(this.index.findClosest(self.x, self.y, self.z, RANGE * RANGE, this.filter));
+        }
+    }
+
+    // The previous implementation of NearbyEntityTracker#getClosestEntity
+    private Point findClosestByScan(double x, double y, double z) {
+        Point nearest = null;
+        double nearestDistance = Double.POSITIVE_INFINITY;
+
+        for (Point point : this.set) {
+            double distance = point.distanceToSqr(x, y, z);
+
+            if (distance < nearestDistance && this.filter.test(point)) {
+                nearest = point;
+                nearestDistance = distance;
+            }
+        }
+
+        if (nearestDistance <= RANGE * RANGE) {
+            return nearest;
+        }
+
+        return null;
+    }
+
+    private static class Point {
+        final double x, y, z;
+        final boolean visible;
+
+        Point(double x, double y, double z, boolean visible) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.visible = visible;
+        }
+
+        double distanceToSqr(double x, double y, double z) {
+            double dx = this.x - x;
+            double dy = this.y - y;
+            double dz = this.z - z;
+
+            return dx * dx + dy * dy + dz * dz;
+        }
+
+        long getSection() {
+            return SectionPos.asLong((int) Math.floor(this.x) >> 4, (int) Math.floor(this.y) >> 4, (int) Math.floor(this.z) >> 4);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package gribland.gribcore.lithium.common.world.scheduler;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectAVLTreeMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectSortedMap;
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.TickNextTickData;
+import net.minecraft.world.level.TickPriority;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One game tick of a redstone heavy world: every due tick is selected and then re-scheduled, like a clock of repeaters
+ * and observers would. Compares the timing wheel with the sorted map of buckets it replaced. The chunk ticking check of
+ * the scheduler is left out, as it is the same for both.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TickEntryTimingWheelBenchmark {
+    @Param({"500000"})
+    public int ticks;
+
+    private final Random random = new Random(0L);
+    private final ArrayList<TickEntry<Object>> executing = new ArrayList<>();
+    private long time;
+    private int limit;
+
+    private TickEntryTimingWheel<Object> wheel;
+    private Long2ObjectSortedMap<TickEntryQueue<Object>> tree;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        this.random.setSeed(0L);
+        this.time = 0L;
+        this.wheel = new TickEntryTimingWheel<>(this.time);
+        this.tree = new Long2ObjectAVLTreeMap<>();
+
+        Object type = new Object();
+
+        for (int i = 0; i < this.ticks; i++) {
+            BlockPos pos = new BlockPos(this.random.nextInt(1024), this.random.nextInt(256), this.random.nextInt(1024));
+            TickPriority priority = this.nextPriority();
+            long trigger = this.time + this.nextDelay();
+
+            TickEntry<Object> wheelEntry = new TickEntry<>(new TickNextTickData<>(pos, type, trigger, priority), new ChunkTickIndex<>());
+            wheelEntry.scheduled = true;
+            this.wheel.push(getBucketKey(trigger, priority), wheelEntry);
+
+            TickEntry<Object> treeEntry = new TickEntry<>(new TickNextTickData<>(pos, type, trigger, priority), new ChunkTickIndex<>());
+            treeEntry.scheduled = true;
+            this.tree.computeIfAbsent(getBucketKey(trigger, priority), key -> new TickEntryQueue<>()).push(treeEntry);
+        }
+    }
+
+    // Repeaters and observers, with a few far away timers
+    private int nextDelay() {
+        if (this.random.nextInt(100) == 0) {
+            return 300 + this.random.nextInt(900);
+        }
+
+        return 2 + this.random.nextInt(15);
+    }
+
+    private TickPriority nextPriority() {
+        int roll = this.random.nextInt(10);
+
+        return roll == 0 ? TickPriority.EXTREMELY_HIGH : (roll < 3 ? TickPriority.VERY_HIGH : TickPriority.NORMAL);
+    }
+
+    @Benchmark
+    public int timingWheel() {
+        this.limit = 65536;
+        this.wheel.select(this.time, this::select);
+
+        int executed = this.executing.size();
+
+        for (TickEntry<Object> tick : this.executing) {
+            tick.executing = false;
+            tick.scheduled = true;
+            this.wheel.push(getBucketKey(this.time + this.nextDelay(), tick.priority), tick);
+        }
+
+        this.executing.clear();
+        this.time++;
+
+        return executed;
+    }
+
+    @Benchmark
+    public int sortedMap() {
+        this.limit = 65536;
+
+        long headKey = getBucketKey(this.time + 1, TickPriority.EXTREMELY_HIGH) - 1;
+        Iterator<TickEntryQueue<Object>> it = this.tree.headMap(headKey).values().iterator();
+
+        while (this.limit > 0 && it.hasNext()) {
+            TickEntryQueue<Object> list = it.next();
+
+            this.select(list);
+
+            if (list.isEmpty()) {
+                it.remove();
+            }
+        }
+
+        int executed = this.executing.size();
+
+        for (TickEntry<Object> tick : this.executing) {
+            tick.executing = false;
+            tick.scheduled = true;
+            this.tree.computeIfAbsent(getBucketKey(this.time + this.nextDelay(), tick.priority), key -> new TickEntryQueue<>()).push(tick);
+        }
+
+        this.executing.clear();
+        this.time++;
+
+        return executed;
+    }
+
+    // Same queue handling as LithiumServerTickScheduler, with every chunk ticking
+    private boolean select(TickEntryQueue<Object> list) {
+        int w = 0;
+
+        for (int i = 0; i < list.size(); i++) {
+            TickEntry<Object> tick = list.getTickAtIndex(i);
+
+            if (!tick.scheduled) {
+                continue;
+            }
+
+            if (this.limit > 0) {
+                tick.scheduled = false;
+                tick.executing = true;
+
+                this.executing.add(tick);
+
+                this.limit--;
+
+                continue;
+            }
+
+            list.setTickAtIndex(w++, tick);
+        }
+
+        list.resize(w);
+
+        return this.limit > 0;
+    }
+
+    private static long getBucketKey(long time, TickPriority priority) {
+        return (time << 4L) | (priority.ordinal() & 15);
+    }
+}
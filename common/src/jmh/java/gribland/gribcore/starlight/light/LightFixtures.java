@@ -0,0 +1,390 @@
+package gribland.gribcore.starlight.light;
+
+import com.google.common.collect.ImmutableMap;
+import gribland.gribcore.starlight.blockstate.ExtendedAbstractBlockState;
+import gribland.gribcore.starlight.chunk.ExtendedChunk;
+import gribland.gribcore.starlight.util.CoordinateUtils;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.core.BlockPos;
+import net.minecraft.server.Bootstrap;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.BlockGetter;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.block.state.properties.Property;
+import net.minecraft.world.level.chunk.ChunkAccess;
+import net.minecraft.world.level.chunk.ChunkStatus;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.chunk.LevelChunkSection;
+import net.minecraft.world.level.chunk.LightChunkGetter;
+import net.minecraft.world.level.chunk.ProtoChunk;
+import net.minecraft.world.level.chunk.UpgradeData;
+import net.minecraft.world.level.levelgen.Heightmap;
+import sun.misc.Unsafe;
+import java.lang.reflect.Field;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Synthetic chunks for running the light engines without a server. Our mixins are not applied to the benchmarks, so
+ * the vanilla block states do not implement {@link ExtendedAbstractBlockState}: the fixtures use copies of a few vanilla
+ * states which implement it like BlockStateBaseMixin does, and the default state of air is replaced by such a copy, as
+ * the engines read it for empty sections. This has to happen before {@link StarLightEngine} is initialised, so every
+ * benchmark touching the engines must create its world here first. The replaced state stays for the rest of the JVM,
+ * which is fine as JMH runs every benchmark in its own fork.
+ * <p>
+ * Chunks are either proto chunks at the light status, as lit during world generation, or full chunks, as lit by
+ * relighting or block changes in loaded chunks. The block engine finds the light sources of the former in their list
+ * of lights and of the latter by scanning the palettes of their sections.
+ * </p>
+ */
+final class LightFixtures {
+
+    static final BlockState AIR;
+    static final BlockState STONE;
+    static final BlockState GLOWSTONE;
+    static final BlockState GLASS;
+    // bottom slab, the engines check its faces for occlusion
+    static final BlockState SLAB;
+
+    // chunks are generated in this radius around (0, 0), so the center chunk has all the neighbours the engines read
+    static final int RADIUS = 2;
+
+    // the terrain is solid up to here, everything above is open to the sky
+    static final int SURFACE_Y = 60;
+
+    static {
+        Bootstrap.bootStrap();
+
+        AIR = copyState(Blocks.AIR.defaultBlockState());
+        STONE = copyState(Blocks.STONE.defaultBlockState());
+        GLOWSTONE = copyState(Blocks.GLOWSTONE.defaultBlockState());
+        GLASS = copyState(Blocks.GLASS.defaultBlockState());
+        SLAB = copyState(Blocks.SMOOTH_STONE_SLAB.defaultBlockState());
+
+        setDefaultState(Blocks.AIR, AIR);
+    }
+
+    /**
+     * Generates and lights the chunks of a new world, as proto chunks at the light status or as full chunks. The terrain
+     * is stone with caves and buried light sources up to the surface, with glass, slabs and light sources on top of it.
+     * Every call generates the same terrain.
+     */
+    static FixtureWorld createWorld(final boolean fullChunks) {
+        return createWorld(fullChunks, RADIUS);
+    }
+
+    /**
+     * Generates and lights the chunks of a new world in the given radius around (0, 0), like
+     * {@link #createWorld(boolean)}.
+     */
+    static FixtureWorld createWorld(final boolean fullChunks, final int radius) {
+        final FixtureWorld world = createUnlitWorld(fullChunks, radius);
+
+        final BlockStarLightEngine blockEngine = new BlockStarLightEngine(world.level);
+        final SkyStarLightEngine skyEngine = new SkyStarLightEngine(world.level);
+
+        for (final ChunkAccess chunk : world.chunks.values()) {
+            final Boolean[] emptySections = StarLightEngine.getEmptySectionsForChunk(chunk);
+
+            chunk.setLightCorrect(false);
+            blockEngine.light(world, chunk, emptySections);
+            skyEngine.light(world, chunk, emptySections);
+            chunk.setLightCorrect(true);
+        }
+
+        return world;
+    }
+
+    /**
+     * Generates the chunks of a new world like {@link #createWorld(boolean)}, without lighting them.
+     */
+    static FixtureWorld createUnlitWorld(final boolean fullChunks) {
+        return createUnlitWorld(fullChunks, RADIUS);
+    }
+
+    /**
+     * Generates the chunks of a new world in the given radius around (0, 0), without lighting them.
+     */
+    static FixtureWorld createUnlitWorld(final boolean fullChunks, final int radius) {
+        final FixtureWorld world = new FixtureWorld(createLevel());
+
+        if (StarLightEngine.AIR_BLOCK_STATE != AIR) {
+            throw new IllegalStateException("StarLightEngine was initialised before the light fixtures");
+        }
+
+        final Random random = new Random(0L);
+
+        for (int chunkZ = -radius; chunkZ <= radius; ++chunkZ) {
+            for (int chunkX = -radius; chunkX <= radius; ++chunkX) {
+                final FixtureChunk chunk = new FixtureChunk(world.level, chunkX, chunkZ);
+                generate(chunk, random);
+                world.chunks.put(CoordinateUtils.getChunkKey(chunkX, chunkZ), fullChunks ? new FixtureLevelChunk(world.level, chunk) : chunk);
+            }
+        }
+
+        return world;
+    }
+
+    /**
+     * Sets the block without notifying a light engine, and keeps the heightmaps of the chunk up to date.
+     */
+    static void setBlock(final ChunkAccess chunk, final int x, final int y, final int z, final BlockState state) {
+        final LevelChunkSection[] sections = chunk.getSections();
+        LevelChunkSection section = sections[y >> 4];
+        if (section == null) {
+            sections[y >> 4] = section = new LevelChunkSection((y >> 4) << 4);
+        }
+        section.setBlockState(x & 15, y & 15, z & 15, state);
+
+        for (final Map.Entry<Heightmap.Types, Heightmap> heightmap : chunk.getHeightmaps()) {
+            heightmap.getValue().update(x & 15, y, z & 15, state);
+        }
+    }
+
+    private static void generate(final FixtureChunk chunk, final Random random) {
+        final int offX = chunk.getPos().x << 4;
+        final int offZ = chunk.getPos().z << 4;
+
+        for (int y = 0; y <= SURFACE_Y + 1; ++y) {
+            for (int z = offZ; z < offZ + 16; ++z) {
+                for (int x = offX; x < offX + 16; ++x) {
+                    final float roll = random.nextFloat();
+                    final BlockState state;
+
+                    if (y < SURFACE_Y) {
+                        state = roll < 0.005F ? GLOWSTONE : (roll < 0.1F ? AIR : STONE);
+                    } else if (y == SURFACE_Y) {
+                        state = roll < 0.05F ? GLASS : (roll < 0.1F ? SLAB : STONE);
+                    } else {
+                        state = roll < 0.01F ? GLOWSTONE : AIR;
+                    }
+
+                    if (state == AIR) {
+                        continue;
+                    }
+
+                    setBlock(chunk, x, y, z, state);
+                    if (state.getLightEmission() > 0) {
+                        // the block engine reads the sources of proto chunks from this list
+                        chunk.lights.add(new BlockPos(x, y, z));
+                    }
+                }
+            }
+        }
+
+        // the features step primes these before chunks are lit, full chunks copy them from the proto chunk
+        Heightmap.primeHeightmaps(chunk, ChunkStatus.FULL.heightmapsAfter());
+        chunk.setStatus(ChunkStatus.LIGHT);
+    }
+
+    // the engines only read the build height and isClientSide from the level, and the full chunks only keep a reference
+    // to it. none of these needs the level to be constructed, which would take a server
+    private static Level createLevel() {
+        try {
+            final Field field = Unsafe.class.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return (Level)((Unsafe)field.get(null)).allocateInstance(ServerLevel.class);
+        } catch (final ReflectiveOperationException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static BlockState copyState(final BlockState state) {
+        final FixtureBlockState copy = new FixtureBlockState(state.getBlock(), state.getValues());
+        copy.initCache();
+        return copy;
+    }
+
+    private static void setDefaultState(final Block block, final BlockState state) {
+        try {
+            final Field field = Block.class.getDeclaredField("defaultBlockState");
+            field.setAccessible(true);
+            field.set(block, state);
+        } catch (final ReflectiveOperationException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private LightFixtures() {
+        throw new RuntimeException();
+    }
+
+    static final class FixtureBlockState extends BlockState implements ExtendedAbstractBlockState {
+
+        private boolean isConditionallyFullOpaque;
+
+        FixtureBlockState(final Block block, final ImmutableMap<Property<?>, Comparable<?>> values) {
+            // the codec is only used for serialisation
+            super(block, values, null);
+        }
+
+        @Override
+        public void initCache() {
+            super.initCache();
+            this.isConditionallyFullOpaque = this.canOcclude() & this.useShapeForLightOcclusion();
+        }
+
+        @Override
+        public boolean isConditionallyFullOpaque() {
+            return this.isConditionallyFullOpaque;
+        }
+
+        @Override
+        public int getOpacityIfCached() {
+            // BlockStateBaseMixin never reports a cached opacity either
+            return -1;
+        }
+    }
+
+    static final class FixtureChunk extends ProtoChunk implements ExtendedChunk {
+
+        private SWMRNibbleArray[] blockNibbles;
+        private SWMRNibbleArray[] skyNibbles;
+        private boolean[] skyEmptinessMap;
+        private boolean[] blockEmptinessMap;
+
+        FixtureChunk(final Level world, final int chunkX, final int chunkZ) {
+            super(new ChunkPos(chunkX, chunkZ), UpgradeData.EMPTY);
+            this.blockNibbles = StarLightEngine.getFilledEmptyLight(world);
+            this.skyNibbles = StarLightEngine.getFilledEmptyLight(world);
+        }
+
+        @Override
+        public SWMRNibbleArray[] getBlockNibbles() {
+            return this.blockNibbles;
+        }
+
+        @Override
+        public void setBlockNibbles(final SWMRNibbleArray[] nibbles) {
+            this.blockNibbles = nibbles;
+        }
+
+        @Override
+        public SWMRNibbleArray[] getSkyNibbles() {
+            return this.skyNibbles;
+        }
+
+        @Override
+        public void setSkyNibbles(final SWMRNibbleArray[] nibbles) {
+            this.skyNibbles = nibbles;
+        }
+
+        @Override
+        public boolean[] getSkyEmptinessMap() {
+            return this.skyEmptinessMap;
+        }
+
+        @Override
+        public void setSkyEmptinessMap(final boolean[] emptinessMap) {
+            this.skyEmptinessMap = emptinessMap;
+        }
+
+        @Override
+        public boolean[] getBlockEmptinessMap() {
+            return this.blockEmptinessMap;
+        }
+
+        @Override
+        public void setBlockEmptinessMap(final boolean[] emptinessMap) {
+            this.blockEmptinessMap = emptinessMap;
+        }
+    }
+
+    static final class FixtureLevelChunk extends LevelChunk implements ExtendedChunk {
+
+        private SWMRNibbleArray[] blockNibbles;
+        private SWMRNibbleArray[] skyNibbles;
+        private boolean[] skyEmptinessMap;
+        private boolean[] blockEmptinessMap;
+
+        // takes the sections and heightmaps of the proto chunk, like a chunk which finished generating
+        FixtureLevelChunk(final Level world, final ProtoChunk proto) {
+            super(world, proto);
+            this.blockNibbles = StarLightEngine.getFilledEmptyLight(world);
+            this.skyNibbles = StarLightEngine.getFilledEmptyLight(world);
+        }
+
+        @Override
+        public SWMRNibbleArray[] getBlockNibbles() {
+            return this.blockNibbles;
+        }
+
+        @Override
+        public void setBlockNibbles(final SWMRNibbleArray[] nibbles) {
+            this.blockNibbles = nibbles;
+        }
+
+        @Override
+        public SWMRNibbleArray[] getSkyNibbles() {
+            return this.skyNibbles;
+        }
+
+        @Override
+        public void setSkyNibbles(final SWMRNibbleArray[] nibbles) {
+            this.skyNibbles = nibbles;
+        }
+
+        @Override
+        public boolean[] getSkyEmptinessMap() {
+            return this.skyEmptinessMap;
+        }
+
+        @Override
+        public void setSkyEmptinessMap(final boolean[] emptinessMap) {
+            this.skyEmptinessMap = emptinessMap;
+        }
+
+        @Override
+        public boolean[] getBlockEmptinessMap() {
+            return this.blockEmptinessMap;
+        }
+
+        @Override
+        public void setBlockEmptinessMap(final boolean[] emptinessMap) {
+            this.blockEmptinessMap = emptinessMap;
+        }
+    }
+
+    static final class FixtureWorld implements LightChunkGetter {
+
+        final Level level;
+        final Long2ObjectOpenHashMap<ChunkAccess> chunks = new Long2ObjectOpenHashMap<>();
+
+        FixtureWorld(final Level level) {
+            this.level = level;
+        }
+
+        ChunkAccess getChunk(final int chunkX, final int chunkZ) {
+            return this.chunks.get(CoordinateUtils.getChunkKey(chunkX, chunkZ));
+        }
+
+        /**
+         * Drops the light of every chunk, so the world can be lit again as if it was just generated.
+         */
+        void clearLight() {
+            for (final ChunkAccess chunk : this.chunks.values()) {
+                final ExtendedChunk extended = (ExtendedChunk)chunk;
+
+                chunk.setLightCorrect(false);
+                extended.setBlockNibbles(StarLightEngine.getFilledEmptyLight(this.level));
+                extended.setSkyNibbles(StarLightEngine.getFilledEmptyLight(this.level));
+                extended.setBlockEmptinessMap(null);
+                extended.setSkyEmptinessMap(null);
+            }
+        }
+
+        @Override
+        public BlockGetter getChunkForLighting(final int chunkX, final int chunkZ) {
+            return this.getChunk(chunkX, chunkZ);
+        }
+
+        @Override
+        public BlockGetter getLevel() {
+            return this.level;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package gribland.gribcore.starlight.light;
+
+import net.minecraft.core.BlockPos;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Block changes queued by several threads while the light thread drains the queue, as happens with worldgen threads
+ * and the main thread producing changes at the same time.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LightQueueBenchmark {
+
+    // block changes spread over a 32x32 chunk area
+    private static final int AREA = 32 * 16;
+
+    private StarLightInterface.LightQueue queue;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        // the manager is only needed for section changes
+        this.queue = new StarLightInterface.LightQueue(null);
+    }
+
+    @Benchmark
+    @Group("queue")
+    @GroupThreads(3)
+    public Object produce() {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        return this.queue.queueBlockChange(BlockPos.asLong(random.nextInt(AREA), random.nextInt(256), random.nextInt(AREA)));
+    }
+
+    @Benchmark
+    @Group("queue")
+    @GroupThreads(1)
+    public Object drain(final LockCounters counters) {
+        return this.queue.removeFirstTask();
+    }
+
+    /**
+     * The lock acquisitions and contended acquisitions of the queue over an iteration, reported next to the score. The
+     * counters of the queue are shared by all threads, so only the single drain thread reports them.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class LockCounters {
+
+        public long lockAcquisitions;
+        public long lockContentions;
+
+        @TearDown(Level.Iteration)
+        public void tearDown(final LightQueueBenchmark benchmark) {
+            this.lockAcquisitions = benchmark.queue.lockAcquisitions.sum();
+            this.lockContentions = benchmark.queue.lockContentions.sum();
+        }
+    }
+}
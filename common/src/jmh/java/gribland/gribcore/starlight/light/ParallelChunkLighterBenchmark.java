@@ -0,0 +1,93 @@
+package gribland.gribcore.starlight.light;
+
+import gribland.gribcore.starlight.util.CoordinateUtils;
+import net.minecraft.world.level.chunk.ChunkAccess;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A pre-generation run over the generated chunks of {@link LightFixtures}: the square of chunks is submitted row by row,
+ * the order a pregen tool generates them in, and every chunk is lit by both engines like a chunk at the light status.
+ * The score is chunks per second, so this measures how much of the pool the neighbour ordering leaves usable.
+ * {@code threads = 1} is the light thread equivalent.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ParallelChunkLighterBenchmark {
+
+    private static final int RADIUS = 16;
+    private static final int CHUNKS = (2 * RADIUS + 1) * (2 * RADIUS + 1);
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private ExecutorService executor;
+    private ParallelChunkLighter lighter;
+
+    private LightFixtures.FixtureWorld world;
+
+    // engines are not thread safe, every worker lights with its own
+    private final ThreadLocal<BlockStarLightEngine> blockEngines = ThreadLocal.withInitial(() -> new BlockStarLightEngine(this.world.level));
+    private final ThreadLocal<SkyStarLightEngine> skyEngines = ThreadLocal.withInitial(() -> new SkyStarLightEngine(this.world.level));
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.world = LightFixtures.createUnlitWorld(false, RADIUS);
+        this.executor = Executors.newFixedThreadPool(this.threads);
+        this.lighter = new ParallelChunkLighter(this.executor, this.threads);
+    }
+
+    // generating the world again would take longer than lighting it
+    @Setup(Level.Invocation)
+    public void clearLight() {
+        this.world.clearLight();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.executor.shutdownNow();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CHUNKS)
+    public void pregen() throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(CHUNKS);
+
+        for (int z = -RADIUS; z <= RADIUS; ++z) {
+            for (int x = -RADIUS; x <= RADIUS; ++x) {
+                final ChunkAccess chunk = this.world.getChunk(x, z);
+                this.lighter.submit(CoordinateUtils.getChunkKey(x, z), () -> {
+                    try {
+                        this.lightChunk(chunk);
+                    } finally {
+                        done.countDown();
+                    }
+                });
+            }
+        }
+
+        done.await();
+    }
+
+    private void lightChunk(final ChunkAccess chunk) {
+        final Boolean[] emptySections = StarLightEngine.getEmptySectionsForChunk(chunk);
+
+        this.blockEngines.get().light(this.world, chunk, emptySections);
+        this.skyEngines.get().light(this.world, chunk, emptySections);
+        chunk.setLightCorrect(true);
+    }
+}
@@ -0,0 +1,149 @@
+package gribland.gribcore.starlight.light;
+
+import gribland.gribcore.starlight.chunk.ExtendedChunk;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.ChunkAccess;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Draining a tick's worth of block changes spread over a fixture world, serially on one thread or split into regions on
+ * the propagation workers. Before measuring, the trial propagates the same changes both ways on two identical worlds
+ * and fails if any light value differs, so the parallel drain is checked against the serial one on every run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PropagationBenchmark {
+
+    private static final int RADIUS = 8;
+
+    // changes stay 2 chunks away from the edge, so every task has the neighbours it reads
+    private static final int CHANGE_RADIUS = RADIUS - 2;
+    private static final int CHANGES = 64;
+
+    // rounds of placing and removing the changes propagated both ways before the trial
+    private static final int VERIFY_ROUNDS = 4;
+
+    @Param({"serial", "parallel"})
+    public String mode;
+
+    private LightFixtures.FixtureWorld world;
+    private StarLightInterface lightInterface;
+
+    private long[] positions;
+    private BlockState[] originalStates;
+    private boolean placed;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.positions = new long[CHANGES];
+        this.originalStates = new BlockState[CHANGES];
+
+        this.world = LightFixtures.createWorld(false, RADIUS);
+        this.lightInterface = new StarLightInterface(this.world, true, true, null);
+
+        final Random random = new Random(0L);
+        final int span = (2 * CHANGE_RADIUS + 1) * 16;
+        for (int i = 0; i < CHANGES; ++i) {
+            final int x = random.nextInt(span) - CHANGE_RADIUS * 16;
+            final int y = LightFixtures.SURFACE_Y - 20 + random.nextInt(40);
+            final int z = random.nextInt(span) - CHANGE_RADIUS * 16;
+            this.positions[i] = BlockPos.asLong(x, y, z);
+            // every call generates the same terrain, so these are the original states of the verified worlds too
+            this.originalStates[i] = this.world.getChunk(x >> 4, z >> 4).getBlockState(new BlockPos(x, y, z));
+        }
+
+        this.verify();
+    }
+
+    // alternately places light sources at the positions and restores the terrain, so every invocation changes light
+    @Setup(Level.Invocation)
+    public void queueChanges() {
+        this.placed = !this.placed;
+        this.queueChanges(this.world, this.lightInterface, this.placed);
+    }
+
+    @Benchmark
+    public int propagate() {
+        return propagate(this.lightInterface, this.mode.equals("parallel"));
+    }
+
+    private void verify() {
+        final LightFixtures.FixtureWorld serialWorld = LightFixtures.createWorld(false, RADIUS);
+        final LightFixtures.FixtureWorld parallelWorld = LightFixtures.createWorld(false, RADIUS);
+        final StarLightInterface serial = new StarLightInterface(serialWorld, true, true, null);
+        final StarLightInterface parallel = new StarLightInterface(parallelWorld, true, true, null);
+
+        for (int round = 0; round < VERIFY_ROUNDS; ++round) {
+            final boolean place = (round & 1) == 0;
+            this.queueChanges(serialWorld, serial, place);
+            this.queueChanges(parallelWorld, parallel, place);
+
+            propagate(serial, false);
+            propagate(parallel, true);
+
+            compareLight(serialWorld, parallelWorld);
+        }
+    }
+
+    private void queueChanges(final LightFixtures.FixtureWorld world, final StarLightInterface lightInterface, final boolean place) {
+        for (int i = 0; i < CHANGES; ++i) {
+            final long position = this.positions[i];
+            final int x = BlockPos.getX(position);
+            final int y = BlockPos.getY(position);
+            final int z = BlockPos.getZ(position);
+
+            LightFixtures.setBlock(world.getChunk(x >> 4, z >> 4), x, y, z, place ? LightFixtures.GLOWSTONE : this.originalStates[i]);
+            lightInterface.lightQueue.queueBlockChange(position);
+        }
+    }
+
+    private static int propagate(final StarLightInterface lightInterface, final boolean parallel) {
+        return parallel ? lightInterface.propagateChangesParallel() : lightInterface.propagateChangesSerial();
+    }
+
+    private static void compareLight(final LightFixtures.FixtureWorld expected, final LightFixtures.FixtureWorld actual) {
+        for (final Long2ObjectMap.Entry<ChunkAccess> entry : expected.chunks.long2ObjectEntrySet()) {
+            final ChunkAccess expectedChunk = entry.getValue();
+            final ChunkAccess actualChunk = actual.chunks.get(entry.getLongKey());
+
+            compareNibbles(expectedChunk, "block", ((ExtendedChunk)expectedChunk).getBlockNibbles(), ((ExtendedChunk)actualChunk).getBlockNibbles());
+            compareNibbles(expectedChunk, "sky", ((ExtendedChunk)expectedChunk).getSkyNibbles(), ((ExtendedChunk)actualChunk).getSkyNibbles());
+        }
+    }
+
+    private static void compareNibbles(final ChunkAccess chunk, final String type, final SWMRNibbleArray[] expected,
+                                       final SWMRNibbleArray[] actual) {
+        for (int i = 0; i < expected.length; ++i) {
+            final SWMRNibbleArray expectedNibble = expected[i];
+            final SWMRNibbleArray actualNibble = actual[i];
+
+            if ((expectedNibble == null) != (actualNibble == null)
+                    || (expectedNibble != null && expectedNibble.isNullNibbleUpdating() != actualNibble.isNullNibbleUpdating())) {
+                throw new IllegalStateException("Parallel propagation changed the " + type + " nibble state of section " + i + " in chunk " + chunk.getPos());
+            }
+            if (expectedNibble == null) {
+                continue;
+            }
+
+            for (int index = 0; index < 16 * 16 * 16; ++index) {
+                if (expectedNibble.getUpdating(index) != actualNibble.getUpdating(index)) {
+                    throw new IllegalStateException("Parallel propagation computed " + type + " light " + actualNibble.getUpdating(index)
+                            + " instead of " + expectedNibble.getUpdating(index) + " at index " + index + " of section " + i + " in chunk " + chunk.getPos());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package gribland.gribcore.starlight.light;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The nibble operations every propagation is built from. Pooled storage and uniform sections are toggled through
+ * {@code config/gribcore.properties} in the working directory of the benchmark run.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SWMRNibbleArrayBenchmark {
+
+    private static final int BLOCKS = 16 * 16 * 16;
+
+    private final int[] levels = new int[BLOCKS];
+    private SWMRNibbleArray lit;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        final Random random = new Random(0L);
+        for (int i = 0; i < BLOCKS; ++i) {
+            this.levels[i] = random.nextInt(16);
+        }
+
+        this.lit = new SWMRNibbleArray();
+        for (int i = 0; i < BLOCKS; ++i) {
+            this.lit.set(i, this.levels[i]);
+        }
+        this.lit.updateVisible();
+    }
+
+    // a light increase through a whole section, as done for a newly lit chunk
+    @Benchmark
+    public SWMRNibbleArray writeSection() {
+        final SWMRNibbleArray nibble = new SWMRNibbleArray();
+        for (int i = 0; i < BLOCKS; ++i) {
+            nibble.set(i, this.levels[i]);
+        }
+        nibble.updateVisible();
+        return nibble;
+    }
+
+    // a single block change on an existing section, which copies the visible data on the first write
+    @Benchmark
+    public boolean writeSingle() {
+        this.lit.set(BLOCKS >>> 1, 15 - this.lit.getUpdating(BLOCKS >>> 1));
+        return this.lit.updateVisible();
+    }
+
+    // a sky section above the terrain, which is stored uniformly if enabled
+    @Benchmark
+    public SWMRNibbleArray fullSection() {
+        final SWMRNibbleArray nibble = new SWMRNibbleArray();
+        nibble.setFull();
+        nibble.updateVisible();
+        return nibble;
+    }
+
+    // a sky section which is lit from above and then shadowed in one spot, promoting a uniform section
+    @Benchmark
+    public SWMRNibbleArray fullSectionShadowed() {
+        final SWMRNibbleArray nibble = new SWMRNibbleArray();
+        nibble.setFull();
+        nibble.set(0, 14);
+        nibble.updateVisible();
+        return nibble;
+    }
+
+    @Benchmark
+    public void readVisible(final Blackhole blackhole) {
+        int sum = 0;
+        for (int i = 0; i < BLOCKS; ++i) {
+            sum += this.lit.getVisible(i);
+        }
+        blackhole.consume(sum);
+    }
+
+    @Benchmark
+    public SWMRNibbleArray.SaveState saveState() {
+        return this.lit.getSaveState();
+    }
+}
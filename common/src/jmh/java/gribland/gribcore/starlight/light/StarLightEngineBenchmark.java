@@ -0,0 +1,103 @@
+package gribland.gribcore.starlight.light;
+
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.chunk.ChunkAccess;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Light propagation by the block and sky engines in the center of a generated and lit world of
+ * {@link LightFixtures}, made of proto chunks or of full chunks. The block change and section change benchmarks
+ * alternate between adding and removing a block, so they measure the average of a light increase and a light decrease.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StarLightEngineBenchmark {
+
+    // just above the surface, so both a light source and a block casting a shadow can be placed here
+    private static final BlockPos BLOCK_CHANGE_POS = new BlockPos(8, LightFixtures.SURFACE_Y + 1, 8);
+
+    // in a section which is empty without this block
+    private static final BlockPos SECTION_CHANGE_POS = new BlockPos(8, 8 * 16 + 8, 8);
+
+    // sky_heightmap is the sky engine with starlight.sky_heightmap enabled, which only changes lighting full chunks
+    @Param({"block", "sky", "sky_heightmap"})
+    public String engine;
+
+    // proto chunks at the light status, as lit during world generation, or full chunks
+    @Param({"proto", "full"})
+    public String chunks;
+
+    private LightFixtures.FixtureWorld world;
+    private ChunkAccess chunk;
+    private StarLightEngine lightEngine;
+
+    private Boolean[] emptySections;
+
+    private final LongOpenHashSet blockChangePositions = new LongOpenHashSet();
+    private boolean blockPlaced;
+
+    private final LongOpenHashSet sectionChangePositions = new LongOpenHashSet();
+    private Boolean[] changedSections;
+    private boolean sectionFilled;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.world = LightFixtures.createWorld("full".equals(this.chunks));
+        this.chunk = this.world.getChunk(0, 0);
+        if ("block".equals(this.engine)) {
+            this.lightEngine = new BlockStarLightEngine(this.world.level);
+        } else {
+            this.lightEngine = new SkyStarLightEngine(this.world.level, "sky_heightmap".equals(this.engine));
+        }
+
+        this.emptySections = StarLightEngine.getEmptySectionsForChunk(this.chunk);
+
+        this.blockChangePositions.add(BLOCK_CHANGE_POS.asLong());
+        this.sectionChangePositions.add(SECTION_CHANGE_POS.asLong());
+        this.changedSections = new Boolean[this.emptySections.length];
+    }
+
+    /**
+     * Lights the whole chunk from scratch, as is done for every generated chunk, or for full chunks when relighting.
+     */
+    @Benchmark
+    public void lightChunk() {
+        this.lightEngine.light(this.world, this.chunk, this.emptySections);
+    }
+
+    /**
+     * Places or removes a light source which also blocks the sky.
+     */
+    @Benchmark
+    public void blockChange() {
+        this.blockPlaced = !this.blockPlaced;
+        LightFixtures.setBlock(this.chunk, BLOCK_CHANGE_POS.getX(), BLOCK_CHANGE_POS.getY(), BLOCK_CHANGE_POS.getZ(),
+                this.blockPlaced ? LightFixtures.GLOWSTONE : LightFixtures.AIR);
+
+        this.lightEngine.blocksChangedInChunk(this.world, 0, 0, this.blockChangePositions, null);
+    }
+
+    /**
+     * Places or removes the only block of a section, so the section changes between empty and non-empty.
+     */
+    @Benchmark
+    public void sectionChange() {
+        this.sectionFilled = !this.sectionFilled;
+        LightFixtures.setBlock(this.chunk, SECTION_CHANGE_POS.getX(), SECTION_CHANGE_POS.getY(), SECTION_CHANGE_POS.getZ(),
+                this.sectionFilled ? LightFixtures.STONE : LightFixtures.AIR);
+
+        this.changedSections[(SECTION_CHANGE_POS.getY() >> 4) - this.lightEngine.minSection] = Boolean.valueOf(!this.sectionFilled);
+        this.lightEngine.blocksChangedInChunk(this.world, 0, 0, this.sectionChangePositions, this.changedSections);
+    }
+}
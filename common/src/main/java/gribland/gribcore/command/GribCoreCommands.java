@@ -0,0 +1,237 @@
+package gribland.gribcore.command;
+
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.context.CommandContext;
+import gribland.gribcore.config.GribCoreConfig;
+import gribland.gribcore.lithium.common.world.scheduler.LithiumServerTickScheduler;
+import gribland.gribcore.lithium.common.world.scheduler.RegionTickExecutor;
+import gribland.gribcore.lithium.common.world.scheduler.TickSchedulerMetrics;
+import gribland.gribcore.starlight.light.LightEngineMetrics;
+import gribland.gribcore.starlight.light.ParallelChunkLighter;
+import gribland.gribcore.starlight.light.RelightJob;
+import gribland.gribcore.starlight.light.StarLightInterface;
+import gribland.gribcore.starlight.light.StarLightLightingProvider;
+import me.shedaniel.architectury.event.events.CommandRegistrationEvent;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.commands.Commands;
+import net.minecraft.network.chat.TextComponent;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.ServerTickList;
+import net.minecraft.world.phys.Vec3;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Admin commands, registered on both platforms through Architectury. Everything lives under {@code /gribcore} and
+ * requires permission level 2.
+ */
+public final class GribCoreCommands {
+
+    private GribCoreCommands() {
+        throw new RuntimeException();
+    }
+
+    public static void init() {
+        CommandRegistrationEvent.EVENT.register((dispatcher, selection) -> register(dispatcher));
+    }
+
+    private static void register(final CommandDispatcher<CommandSourceStack> dispatcher) {
+        dispatcher.register(Commands.literal("gribcore")
+                .requires(source -> source.hasPermission(2))
+                .then(Commands.literal("relight")
+                        .then(Commands.argument("radius", IntegerArgumentType.integer(0, 512))
+                                .executes(ctx -> startRelight(ctx, IntegerArgumentType.getInteger(ctx, "radius"))))
+                        .then(Commands.literal("status")
+                                .executes(GribCoreCommands::relightStatus))
+                        .then(Commands.literal("cancel")
+                                .executes(GribCoreCommands::cancelRelight)))
+                .then(Commands.literal("metrics")
+                        .then(Commands.literal("light")
+                                .executes(GribCoreCommands::lightMetrics)
+                                .then(Commands.literal("reset")
+                                        .executes(GribCoreCommands::resetLightMetrics)))
+                        .then(Commands.literal("ticks")
+                                .executes(ctx -> tickMetrics(ctx, 5))
+                                .then(Commands.literal("top")
+                                        .then(Commands.argument("count", IntegerArgumentType.integer(1, 100))
+                                                .executes(ctx -> tickMetrics(ctx, IntegerArgumentType.getInteger(ctx, "count")))))
+                                .then(Commands.literal("reset")
+                                        .executes(GribCoreCommands::resetTickMetrics))
+                                .then(Commands.literal("regions")
+                                        .executes(GribCoreCommands::tickRegions)))));
+    }
+
+    private static StarLightInterface getLightEngine(final ServerLevel world) {
+        return ((StarLightLightingProvider)world.getChunkSource().getLightEngine()).getLightEngine();
+    }
+
+    private static int startRelight(final CommandContext<CommandSourceStack> ctx, final int radius) {
+        final CommandSourceStack source = ctx.getSource();
+        final Vec3 position = source.getPosition();
+        final ChunkPos center = new ChunkPos(((int)Math.floor(position.x)) >> 4, ((int)Math.floor(position.z)) >> 4);
+
+        final RelightJob job = getLightEngine(source.getLevel()).startRelight(center, radius);
+        source.sendSuccess(new TextComponent("Relighting " + job.getTotalChunks() + " chunks around " + center), true);
+
+        return job.getTotalChunks();
+    }
+
+    private static int relightStatus(final CommandContext<CommandSourceStack> ctx) {
+        final CommandSourceStack source = ctx.getSource();
+        final List<RelightJob> jobs = getLightEngine(source.getLevel()).getRelightJobs();
+
+        if (jobs.isEmpty()) {
+            source.sendSuccess(new TextComponent("No relight jobs"), false);
+            return 0;
+        }
+
+        for (final RelightJob job : jobs) {
+            source.sendSuccess(new TextComponent(String.format(Locale.ROOT, "%s around %s (radius %d): %d/%d chunks, %.1f chunks/s",
+                    job.getState().name().toLowerCase(Locale.ROOT), job.getCenter(), job.getRadius(),
+                    job.getRelitChunks(), job.getTotalChunks(), job.getChunksPerSecond())), false);
+        }
+
+        return jobs.size();
+    }
+
+    private static int lightMetrics(final CommandContext<CommandSourceStack> ctx) {
+        final CommandSourceStack source = ctx.getSource();
+
+        if (!LightEngineMetrics.ENABLED) {
+            source.sendFailure(new TextComponent("Light engine metrics are disabled, set starlight.metrics=true in config/gribcore.properties"));
+            return 0;
+        }
+
+        for (final String line : LightEngineMetrics.report()) {
+            source.sendSuccess(new TextComponent(line), false);
+        }
+        for (final ServerLevel world : source.getServer().getAllLevels()) {
+            final StarLightInterface lightEngine = getLightEngine(world);
+            source.sendSuccess(new TextComponent(String.format(Locale.ROOT, "%s: light queue=%d lock acquisitions=%d contended=%d",
+                    world.dimension().location(), lightEngine.getLightQueueSize(),
+                    lightEngine.getLightQueueLockAcquisitions(), lightEngine.getLightQueueLockContentions())), false);
+
+            final ParallelChunkLighter chunkLighter = lightEngine.getChunkLighter();
+            if (chunkLighter != null) {
+                final long chunksLit = chunkLighter.getChunksLit();
+                source.sendSuccess(new TextComponent(String.format(Locale.ROOT, "%s: parallel chunk lighting: lit=%d pending=%d mean=%.2fms",
+                        world.dimension().location(), chunksLit, chunkLighter.getPendingCount(),
+                        chunksLit == 0L ? 0.0 : chunkLighter.getLightingNanos() / 1.0E6 / chunksLit)), false);
+            }
+        }
+
+        return 1;
+    }
+
+    private static int resetLightMetrics(final CommandContext<CommandSourceStack> ctx) {
+        LightEngineMetrics.reset();
+        ctx.getSource().sendSuccess(new TextComponent("Reset light engine metrics"), true);
+        return 1;
+    }
+
+    private static int tickMetrics(final CommandContext<CommandSourceStack> ctx, final int top) {
+        final CommandSourceStack source = ctx.getSource();
+
+        if (!TickSchedulerMetrics.ENABLED) {
+            source.sendFailure(new TextComponent("Tick metrics are disabled, set lithium.tick_metrics=true in config/gribcore.properties"));
+            return 0;
+        }
+
+        for (final ServerLevel world : source.getServer().getAllLevels()) {
+            sendTickMetrics(source, world.dimension().location() + " blocks", world.getBlockTicks(), top);
+            sendTickMetrics(source, world.dimension().location() + " fluids", world.getLiquidTicks(), top);
+        }
+
+        return 1;
+    }
+
+    private static void sendTickMetrics(final CommandSourceStack source, final String name, final ServerTickList<?> ticks, final int top) {
+        if (!(ticks instanceof LithiumServerTickScheduler)) {
+            return;
+        }
+
+        source.sendSuccess(new TextComponent(name + ":"), false);
+
+        for (final String line : ((LithiumServerTickScheduler<?>)ticks).reportMetrics(top)) {
+            source.sendSuccess(new TextComponent("  " + line), false);
+        }
+    }
+
+    private static int resetTickMetrics(final CommandContext<CommandSourceStack> ctx) {
+        final CommandSourceStack source = ctx.getSource();
+
+        if (!TickSchedulerMetrics.ENABLED) {
+            source.sendFailure(new TextComponent("Tick metrics are disabled, set lithium.tick_metrics=true in config/gribcore.properties"));
+            return 0;
+        }
+
+        for (final ServerLevel world : source.getServer().getAllLevels()) {
+            resetTickMetrics(world.getBlockTicks());
+            resetTickMetrics(world.getLiquidTicks());
+        }
+
+        source.sendSuccess(new TextComponent("Reset tick metrics"), true);
+        return 1;
+    }
+
+    private static void resetTickMetrics(final ServerTickList<?> ticks) {
+        if (ticks instanceof LithiumServerTickScheduler) {
+            ((LithiumServerTickScheduler<?>)ticks).resetMetrics();
+        }
+    }
+
+    private static int tickRegions(final CommandContext<CommandSourceStack> ctx) {
+        final CommandSourceStack source = ctx.getSource();
+
+        if (!GribCoreConfig.LITHIUM_PARALLEL_TICKS) {
+            source.sendFailure(new TextComponent("Parallel tick execution is disabled, set lithium.parallel_ticks=true in config/gribcore.properties"));
+            return 0;
+        }
+
+        for (final ServerLevel world : source.getServer().getAllLevels()) {
+            sendTickRegions(source, world.dimension().location() + " blocks", world.getBlockTicks());
+            sendTickRegions(source, world.dimension().location() + " fluids", world.getLiquidTicks());
+        }
+
+        return 1;
+    }
+
+    private static void sendTickRegions(final CommandSourceStack source, final String name, final ServerTickList<?> ticks) {
+        if (!(ticks instanceof LithiumServerTickScheduler)) {
+            return;
+        }
+
+        final List<? extends RegionTickExecutor.Region<?>> regions = ((LithiumServerTickScheduler<?>)ticks).getLastRegions();
+
+        if (regions.isEmpty()) {
+            return;
+        }
+
+        source.sendSuccess(new TextComponent(name + ": " + regions.size() + " regions"), false);
+
+        for (int i = 0, len = Math.min(regions.size(), 10); i < len; ++i) {
+            final RegionTickExecutor.Region<?> region = regions.get(i);
+            source.sendSuccess(new TextComponent(String.format(Locale.ROOT, "  [%d, %d] %s: %d ticks in %.3f ms",
+                    region.x * RegionTickExecutor.REGION_SIZE, region.z * RegionTickExecutor.REGION_SIZE,
+                    region.parallel ? "parallel" : "serial", region.ticks.size(), region.nanos / 1.0E6)), false);
+        }
+    }
+
+    private static int cancelRelight(final CommandContext<CommandSourceStack> ctx) {
+        final CommandSourceStack source = ctx.getSource();
+        int cancelled = 0;
+
+        for (final RelightJob job : getLightEngine(source.getLevel()).getRelightJobs()) {
+            if (!job.isDone()) {
+                job.cancel();
+                ++cancelled;
+            }
+        }
+
+        source.sendSuccess(new TextComponent("Cancelled " + cancelled + " relight jobs"), true);
+
+        return cancelled;
+    }
+}
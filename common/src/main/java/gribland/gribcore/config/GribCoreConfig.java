@@ -0,0 +1,235 @@
+package gribland.gribcore.config;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.*;
+import java.util.Properties;
+
+/**
+ * Runtime tuning options shared by both platforms. Unlike the mixin rules in {@code gribcore-mixins.properties}, these
+ * options do not change which code is loaded, only how the already loaded code behaves. Every option defaults to the
+ * behaviour of the original implementation.
+ */
+public final class GribCoreConfig {
+    private static final Logger LOGGER = LogManager.getLogger("GribCoreConfig");
+
+    private static final File FILE = new File("./config/gribcore.properties");
+
+    private static final Properties PROPERTIES = load(FILE);
+
+    /**
+     * Whether {@link gribland.gribcore.starlight.light.StarLightInterface#propagateChanges()} should split the queued
+     * light tasks into independent regions and propagate them on a worker pool.
+     */
+    public static final boolean STARLIGHT_PARALLEL_PROPAGATION = getBoolean("starlight.parallel_propagation", false);
+
+    /**
+     * The number of worker threads used for parallel light propagation.
+     */
+    public static final int STARLIGHT_PROPAGATION_THREADS = getInt("starlight.propagation_threads",
+            Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2)), 1, 64);
+
+    /**
+     * Whether {@link gribland.gribcore.starlight.light.SWMRNibbleArray} storage should come from a pool shared by all
+     * threads, with the storage of unloaded chunks returned to it.
+     */
+    public static final boolean STARLIGHT_POOLED_NIBBLE_STORAGE = getBoolean("starlight.pooled_nibble_storage", false);
+
+    /**
+     * The maximum number of 2048 byte nibble arrays kept in the shared pool.
+     */
+    public static final int STARLIGHT_NIBBLE_POOL_SIZE = getInt("starlight.nibble_pool_size", 16384, 0, 1 << 20);
+
+    /**
+     * Whether light sections where every level is the same (such as fully lit sky sections) should be stored as a single
+     * value until a different value is written.
+     */
+    public static final boolean STARLIGHT_UNIFORM_NIBBLES = getBoolean("starlight.uniform_nibbles", false);
+
+    /**
+     * The time in milliseconds the light thread should spend relighting one batch of a relight job.
+     */
+    public static final int STARLIGHT_RELIGHT_BUDGET_MS = getInt("starlight.relight_budget_ms", 25, 1, 1000);
+
+    /**
+     * Whether light data should be saved in the compact encoding. Chunks saved in either format can always be loaded.
+     */
+    public static final boolean STARLIGHT_COMPACT_LIGHT_FORMAT = getBoolean("starlight.compact_light_format", false);
+
+    /**
+     * Whether the light engine should record phase timings and queue statistics, see
+     * {@link gribland.gribcore.starlight.light.LightEngineMetrics}.
+     */
+    public static final boolean STARLIGHT_METRICS = getBoolean("starlight.metrics", false);
+
+    /**
+     * How often, in seconds, light engine metrics are appended to {@code logs/starlight-metrics.log}. 0 disables the dump.
+     */
+    public static final int STARLIGHT_METRICS_DUMP_INTERVAL = getInt("starlight.metrics_dump_interval", 0, 0, 86400);
+
+    /**
+     * Whether skylight should trust the chunk's world surface heightmap when lighting a chunk, so that the blocks above
+     * the surface do not have to be read.
+     */
+    public static final boolean STARLIGHT_SKY_HEIGHTMAP = getBoolean("starlight.sky_heightmap", false);
+
+    /**
+     * Whether queued light tasks should be propagated in spatial order, with each light engine reusing the chunks it
+     * looked up for the previous task.
+     */
+    public static final boolean STARLIGHT_CHUNK_WINDOW_REUSE = getBoolean("starlight.chunk_window_reuse", false);
+
+    /**
+     * Whether the initial lighting of generated chunks should run on a worker pool instead of the light thread, see
+     * {@link gribland.gribcore.starlight.light.ParallelChunkLighter}.
+     */
+    public static final boolean STARLIGHT_PARALLEL_CHUNK_LIGHTING = getBoolean("starlight.parallel_chunk_lighting", false);
+
+    /**
+     * The number of worker threads used to light generated chunks.
+     */
+    public static final int STARLIGHT_CHUNK_LIGHTING_THREADS = getInt("starlight.chunk_lighting_threads",
+            Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2)), 1, 64);
+
+    /**
+     * Whether the scheduled ticks of independent regions should be executed on a worker pool, see
+     * {@link gribland.gribcore.lithium.common.world.scheduler.RegionTickExecutor}.
+     */
+    public static final boolean LITHIUM_PARALLEL_TICKS = getBoolean("lithium.parallel_ticks", false);
+
+    /**
+     * The number of worker threads used for parallel tick execution.
+     */
+    public static final int LITHIUM_PARALLEL_TICK_THREADS = getInt("lithium.parallel_tick_threads",
+            Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2)), 1, 64);
+
+    /**
+     * The comma separated ids of the blocks and fluids whose scheduled ticks may run off-thread. Only types whose ticks
+     * stay close to their own position and never touch shared state (such as points of interest or raids) should be
+     * listed here. Regions with ticks of any other type always run on the server thread.
+     */
+    public static final String LITHIUM_PARALLEL_TICK_TYPES = getString("lithium.parallel_tick_types", "");
+
+    /**
+     * Whether the tick schedulers should count scheduled, executed and deferred ticks and record the execution time per
+     * type and chunk, see {@link gribland.gribcore.lithium.common.world.scheduler.TickSchedulerMetrics}.
+     */
+    public static final boolean LITHIUM_TICK_METRICS = getBoolean("lithium.tick_metrics", false);
+
+    /**
+     * Whether the entity tracker of server worlds should only record entities crossing sections, and notify the nearby
+     * entity listeners of the net changes once per tick and before listeners are queried, instead of on every crossing.
+     */
+    public static final boolean LITHIUM_DEFERRED_ENTITY_TRACKING = getBoolean("lithium.deferred_entity_tracking", false);
+
+    /**
+     * Whether the nearby entity trackers of AI goals with the same entity class and range, whose entities are in the same
+     * chunk section, should share a single registration with the entity tracker and a single set of candidates.
+     */
+    public static final boolean LITHIUM_SHARED_ENTITY_LISTENERS = getBoolean("lithium.shared_entity_listeners", false);
+
+    private GribCoreConfig() {
+        throw new RuntimeException();
+    }
+
+    public static String getString(String key, String defaultValue) {
+        return PROPERTIES.getProperty(key, defaultValue);
+    }
+
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        String value = PROPERTIES.getProperty(key);
+
+        if (value == null) {
+            return defaultValue;
+        }
+
+        if (value.equalsIgnoreCase("true")) {
+            return true;
+        } else if (value.equalsIgnoreCase("false")) {
+            return false;
+        }
+
+        LOGGER.warn("Invalid value '{}' encountered for configuration key '{}', using default '{}'", value, key, defaultValue);
+
+        return defaultValue;
+    }
+
+    public static int getInt(String key, int defaultValue, int min, int max) {
+        String value = PROPERTIES.getProperty(key);
+
+        if (value == null) {
+            return defaultValue;
+        }
+
+        try {
+            int parsed = Integer.parseInt(value.trim());
+
+            if (parsed >= min && parsed <= max) {
+                return parsed;
+            }
+        } catch (NumberFormatException ignored) {
+        }
+
+        LOGGER.warn("Invalid value '{}' encountered for configuration key '{}' (expected [{}, {}]), using default '{}'", value, key, min, max, defaultValue);
+
+        return defaultValue;
+    }
+
+    private static Properties load(File file) {
+        Properties props = new Properties();
+
+        if (file.exists()) {
+            try (FileInputStream fin = new FileInputStream(file)) {
+                props.load(fin);
+            } catch (IOException e) {
+                LOGGER.warn("Could not load configuration file, using defaults", e);
+            }
+        } else {
+            try {
+                writeDefaultConfig(file);
+            } catch (IOException e) {
+                LOGGER.warn("Could not write default configuration file", e);
+            }
+        }
+
+        return props;
+    }
+
+    private static void writeDefaultConfig(File file) throws IOException {
+        File dir = file.getParentFile();
+
+        if (!dir.exists()) {
+            if (!dir.mkdirs()) {
+                throw new IOException("Could not create parent directories");
+            }
+        } else if (!dir.isDirectory()) {
+            throw new IOException("The parent file is not a directory");
+        }
+
+        try (Writer writer = new FileWriter(file)) {
+            writer.write("# This is the runtime configuration file for GribCore.\n");
+            writer.write("# Every option is disabled or set to the original behaviour by default.\n");
+            writer.write("#\n");
+            writer.write("# starlight.parallel_propagation=false\n");
+            writer.write("# starlight.propagation_threads=<min(4, cores / 2)>\n");
+            writer.write("# starlight.pooled_nibble_storage=false\n");
+            writer.write("# starlight.nibble_pool_size=16384\n");
+            writer.write("# starlight.uniform_nibbles=false\n");
+            writer.write("# starlight.relight_budget_ms=25\n");
+            writer.write("# starlight.compact_light_format=false\n");
+            writer.write("# starlight.metrics=false\n");
+            writer.write("# starlight.metrics_dump_interval=0\n");
+            writer.write("# starlight.sky_heightmap=false\n");
+            writer.write("# starlight.chunk_window_reuse=false\n");
+            writer.write("# starlight.parallel_chunk_lighting=false\n");
+            writer.write("# starlight.chunk_lighting_threads=<min(4, cores / 2)>\n");
+            writer.write("# lithium.parallel_ticks=false\n");
+            writer.write("# lithium.parallel_tick_threads=<min(4, cores / 2)>\n");
+            writer.write("# lithium.parallel_tick_types=\n");
+            writer.write("# lithium.tick_metrics=false\n");
+            writer.write("# lithium.deferred_entity_tracking=false\n");
+            writer.write("# lithium.shared_entity_listeners=false\n");
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package gribland.gribcore.lithium.common.entity.tracker;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.Reference2LongOpenHashMap;
+import net.minecraft.core.SectionPos;
+
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+/**
+ * A set of entities bucketed by the chunk section they are in. The closest entity matching a filter is found by
+ * visiting the buckets in the order of the distance of their closest entity to the query position and stopping as soon
+ * as no remaining bucket contains an entity closer than the best match so far. Unlike a scan over every entity, the
+ * filter, which usually is the expensive part, is then only run for the entities near the query position.
+ *
+ * The section of an entity is only a hint for grouping nearby entities: it can lag far behind the actual position, as
+ * teleported entities are only moved once the world notices, and the vertical section of an entity in a chunk is
+ * clamped to the build height. The distance of a bucket is therefore always taken from the actual positions of its
+ * entities, never from the bounds of its section.
+ *
+ * The owner is responsible for calling {@link #move(Object, long)} whenever an entity changes its section.
+ */
+public class SectionEntityIndex<T> {
+    private final DistanceFunction<T> distanceFunction;
+
+    private final Long2ObjectOpenHashMap<Bucket<T>> buckets = new Long2ObjectOpenHashMap<>();
+    private final Reference2LongOpenHashMap<T> sectionByEntity = new Reference2LongOpenHashMap<>();
+
+    // Reused by every query to sort the buckets in
+    @SuppressWarnings("unchecked")
+    private Bucket<T>[] order = new Bucket[16];
+
+    public SectionEntityIndex(DistanceFunction<T> distanceFunction) {
+        this.distanceFunction = distanceFunction;
+    }
+
+    /**
+     * Adds the entity to the bucket of the given section, see {@link SectionPos#asLong(int, int, int)}.
+     *
+     * @return false if the entity was already contained
+     */
+    public boolean add(T entity, long section) {
+        if (this.sectionByEntity.containsKey(entity)) {
+            return false;
+        }
+
+        this.sectionByEntity.put(entity, section);
+        this.getOrCreateBucket(section).entities.add(entity);
+
+        return true;
+    }
+
+    /**
+     * @return false if the entity was not contained
+     */
+    public boolean remove(T entity) {
+        if (!this.sectionByEntity.containsKey(entity)) {
+            return false;
+        }
+
+        this.removeFromBucket(entity, this.sectionByEntity.removeLong(entity));
+
+        return true;
+    }
+
+    /**
+     * Moves a contained entity to the bucket of the given section. Does nothing if the entity is not contained.
+     */
+    public void move(T entity, long section) {
+        if (!this.sectionByEntity.containsKey(entity)) {
+            return;
+        }
+
+        long prev = this.sectionByEntity.put(entity, section);
+
+        if (prev != section) {
+            this.removeFromBucket(entity, prev);
+            this.getOrCreateBucket(section).entities.add(entity);
+        }
+    }
+
+    public boolean contains(T entity) {
+        return this.sectionByEntity.containsKey(entity);
+    }
+
+    public int size() {
+        return this.sectionByEntity.size();
+    }
+
+    public boolean isEmpty() {
+        return this.sectionByEntity.isEmpty();
+    }
+
+    /**
+     * Returns the closest entity to the given position which is at most {@code sqrt(maxDistanceSq)} away and matches the
+     * filter, or null if there is none. The filter is only tested for entities closer than the best match so far. If
+     * multiple entities are equally close, any of them may be returned.
+     */
+    public T findClosest(double x, double y, double z, double maxDistanceSq, Predicate<? super T> filter) {
+        if (this.sectionByEntity.isEmpty()) {
+            return null;
+        }
+
+        if (this.order.length < this.buckets.size()) {
+            this.order = Arrays.copyOf(this.order, Math.max(this.buckets.size(), this.order.length * 2));
+        }
+
+        Bucket<T>[] order = this.order;
+        int count = 0;
+
+        // Sort the buckets which contain an entity in range by the distance of their closest entity, the number of
+        // buckets is small. Computing the distances is cheap compared to the filter.
+        for (Bucket<T> bucket : this.buckets.values()) {
+            double distance = this.getClosestDistanceSq(bucket, x, y, z);
+
+            if (distance > maxDistanceSq) {
+                continue;
+            }
+
+            bucket.distanceSq = distance;
+
+            int i = count++;
+
+            while (i > 0 && order[i - 1].distanceSq > distance) {
+                order[i] = order[i - 1];
+                i--;
+            }
+
+            order[i] = bucket;
+        }
+
+        T nearest = null;
+        double nearestDistance = Double.POSITIVE_INFINITY;
+
+        for (int i = 0; i < count; i++) {
+            Bucket<T> bucket = order[i];
+
+            // No entity in this or any following bucket can be closer
+            if (bucket.distanceSq >= nearestDistance) {
+                break;
+            }
+
+            ObjectArrayList<T> entities = bucket.entities;
+
+            for (int j = 0, size = entities.size(); j < size; j++) {
+                T entity = entities.get(j);
+                double distance = this.distanceFunction.getDistanceSq(entity, x, y, z);
+
+                if (distance < nearestDistance && distance <= maxDistanceSq && filter.test(entity)) {
+                    nearest = entity;
+                    nearestDistance = distance;
+                }
+            }
+        }
+
+        // Do not keep buckets which are removed later reachable
+        Arrays.fill(order, 0, count, null);
+
+        return nearest;
+    }
+
+    // The squared distance of the closest entity of the bucket to the given position
+    private double getClosestDistanceSq(Bucket<T> bucket, double x, double y, double z) {
+        ObjectArrayList<T> entities = bucket.entities;
+        double closest = Double.POSITIVE_INFINITY;
+
+        for (int i = 0, size = entities.size(); i < size; i++) {
+            double distance = this.distanceFunction.getDistanceSq(entities.get(i), x, y, z);
+
+            if (distance < closest) {
+                closest = distance;
+            }
+        }
+
+        return closest;
+    }
+
+    private Bucket<T> getOrCreateBucket(long section) {
+        Bucket<T> bucket = this.buckets.get(section);
+
+        if (bucket == null) {
+            this.buckets.put(section, bucket = new Bucket<>());
+        }
+
+        return bucket;
+    }
+
+    private void removeFromBucket(T entity, long section) {
+        Bucket<T> bucket = this.buckets.get(section);
+        ObjectArrayList<T> entities = bucket.entities;
+
+        // The order within a bucket does not matter, so swap the last entity into the free slot
+        int index = entities.indexOf(entity);
+        int last = entities.size() - 1;
+
+        entities.set(index, entities.get(last));
+        entities.remove(last);
+
+        if (entities.isEmpty()) {
+            this.buckets.remove(section);
+        }
+    }
+
+    public interface DistanceFunction<T> {
+        double getDistanceSq(T entity, double x, double y, double z);
+    }
+
+    private static class Bucket<T> {
+        private final ObjectArrayList<T> entities = new ObjectArrayList<>();
+
+        // The distance of the closest entity of this bucket to the position of the current query
+        private double distanceSq;
+    }
+}
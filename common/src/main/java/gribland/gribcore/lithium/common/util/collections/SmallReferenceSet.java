@@ -0,0 +1,239 @@
+package gribland.gribcore.lithium.common.util.collections;
+
+import it.unimi.dsi.fastutil.HashCommon;
+
+import java.util.Arrays;
+
+/**
+ * A set with reference-equality semantics which stores its elements in a single array. Most sets of this kind only
+ * ever hold a few elements, which are found faster by a linear scan than by hashing and take a fraction of the memory
+ * of a hash set. Only once the set grows beyond {@link #HASH_THRESHOLD} elements, the array is turned into an open
+ * addressing hash table, and it is turned back into a plain array once the set shrinks well below that again.
+ *
+ * Either way, every element is stored in a slot of the array and every other slot is null. Elements are iterated
+ * without allocating by visiting every slot up to {@link #getSlotCount()} and skipping the empty ones, in no particular
+ * order.
+ */
+public class SmallReferenceSet<T> {
+    private static final int HASH_THRESHOLD = 8;
+
+    private static final Object[] EMPTY = new Object[0];
+
+    // The elements, either packed into the first slots or hashed into a table with a power of two length
+    private Object[] elements = EMPTY;
+    private int size;
+    private boolean hashed;
+
+    public boolean add(T element) {
+        if (this.hashed) {
+            return this.addHashed(element);
+        }
+
+        if (this.indexOfPacked(element) >= 0) {
+            return false;
+        }
+
+        if (this.size == HASH_THRESHOLD) {
+            this.rehash(HASH_THRESHOLD * 2);
+
+            return this.addHashed(element);
+        }
+
+        if (this.size == this.elements.length) {
+            this.elements = Arrays.copyOf(this.elements, Math.max(2, this.size * 2));
+        }
+
+        this.elements[this.size++] = element;
+
+        return true;
+    }
+
+    public boolean remove(T element) {
+        if (this.hashed) {
+            return this.removeHashed(element);
+        }
+
+        int pos = this.indexOfPacked(element);
+
+        if (pos < 0) {
+            return false;
+        }
+
+        int last = --this.size;
+
+        this.elements[pos] = this.elements[last];
+        this.elements[last] = null;
+
+        if (this.size == 0) {
+            this.elements = EMPTY;
+        }
+
+        return true;
+    }
+
+    public boolean contains(T element) {
+        return this.hashed ? this.indexOfHashed(element) >= 0 : this.indexOfPacked(element) >= 0;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Returns the number of slots which have to be visited to find every element.
+     */
+    public int getSlotCount() {
+        return this.hashed ? this.elements.length : this.size;
+    }
+
+    /**
+     * Returns the element in the given slot, or null if the slot is empty.
+     */
+    @SuppressWarnings("unchecked")
+    public T getSlot(int slot) {
+        return (T) this.elements[slot];
+    }
+
+    private int indexOfPacked(Object element) {
+        Object[] elements = this.elements;
+
+        for (int i = 0; i < this.size; i++) {
+            if (elements[i] == element) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private int indexOfHashed(Object element) {
+        Object[] table = this.elements;
+        int mask = table.length - 1;
+        int pos = HashCommon.mix(System.identityHashCode(element)) & mask;
+        Object curr;
+
+        while ((curr = table[pos]) != null) {
+            if (curr == element) {
+                return pos;
+            }
+
+            pos = (pos + 1) & mask;
+        }
+
+        return -1;
+    }
+
+    private boolean addHashed(T element) {
+        Object[] table = this.elements;
+        int mask = table.length - 1;
+        int pos = HashCommon.mix(System.identityHashCode(element)) & mask;
+        Object curr;
+
+        while ((curr = table[pos]) != null) {
+            if (curr == element) {
+                return false;
+            }
+
+            pos = (pos + 1) & mask;
+        }
+
+        table[pos] = element;
+
+        // Keep the load factor at or below 3/4
+        if (++this.size > table.length - (table.length >> 2)) {
+            this.rehash(table.length * 2);
+        }
+
+        return true;
+    }
+
+    private boolean removeHashed(T element) {
+        int pos = this.indexOfHashed(element);
+
+        if (pos < 0) {
+            return false;
+        }
+
+        this.size--;
+
+        // Shift the following elements of the same run back, so no lookup stops early at the now empty slot
+        Object[] table = this.elements;
+        int mask = table.length - 1;
+
+        for (;;) {
+            int last = pos;
+            Object curr;
+
+            pos = (pos + 1) & mask;
+
+            for (;;) {
+                if ((curr = table[pos]) == null) {
+                    table[last] = null;
+
+                    if (this.size <= HASH_THRESHOLD / 2) {
+                        this.pack();
+                    }
+
+                    return true;
+                }
+
+                int slot = HashCommon.mix(System.identityHashCode(curr)) & mask;
+
+                if (last <= pos ? last >= slot || slot > pos : last >= slot && slot > pos) {
+                    break;
+                }
+
+                pos = (pos + 1) & mask;
+            }
+
+            table[last] = curr;
+        }
+    }
+
+    private void rehash(int length) {
+        Object[] prev = this.elements;
+        int count = this.hashed ? prev.length : this.size;
+
+        Object[] table = new Object[length];
+        int mask = length - 1;
+
+        for (int i = 0; i < count; i++) {
+            Object element = prev[i];
+
+            if (element == null) {
+                continue;
+            }
+
+            int pos = HashCommon.mix(System.identityHashCode(element)) & mask;
+
+            while (table[pos] != null) {
+                pos = (pos + 1) & mask;
+            }
+
+            table[pos] = element;
+        }
+
+        this.elements = table;
+        this.hashed = true;
+    }
+
+    // Turns the hash table back into a packed array, well below the threshold so a set at the threshold does not
+    // switch back and forth
+    private void pack() {
+        Object[] packed = new Object[HASH_THRESHOLD];
+        int count = 0;
+
+        for (Object element : this.elements) {
+            if (element != null) {
+                packed[count++] = element;
+            }
+        }
+
+        this.elements = packed;
+        this.hashed = false;
+    }
+}
@@ -0,0 +1,205 @@
+package gribland.gribcore.lithium.common.world.scheduler;
+
+import net.minecraft.core.BlockPos;
+
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * The scheduled ticks of a single chunk, bucketed by their column within the chunk and sorted by their height within
+ * each column. The tick queries of vanilla only bound the x and z coordinates, so a query only walks the ticks in the
+ * columns it covers instead of filtering every tick in the chunk. Ticks at the same position are kept in the order they
+ * were added.
+ *
+ * Adding or removing a tick only shifts the ticks above it in its own column, which are bounded by the height of the
+ * world, so it stays cheap no matter how many ticks the chunk holds.
+ */
+public class ChunkTickIndex<T> {
+    private static final int INITIAL_COLUMN_CAPACITY = 4;
+
+    // Indexed by getColumn(x, z), allocated when the first tick is added to them
+    @SuppressWarnings("unchecked")
+    private final Column<T>[] columns = new Column[256];
+    private int size;
+
+    public void add(TickEntry<T> tick) {
+        int column = getColumn(tick.pos.getX() & 15, tick.pos.getZ() & 15);
+        Column<T> ticks = this.columns[column];
+
+        if (ticks == null) {
+            this.columns[column] = ticks = new Column<>();
+        }
+
+        ticks.add(tick);
+
+        this.size++;
+    }
+
+    public void remove(TickEntry<T> tick) {
+        Column<T> ticks = this.columns[getColumn(tick.pos.getX() & 15, tick.pos.getZ() & 15)];
+
+        if (ticks != null && ticks.remove(tick)) {
+            this.size--;
+        }
+    }
+
+    /**
+     * Adds every tick in the given local column bounds (inclusive) which matches the predicate to the list, and removes
+     * them from this index if requested. Removing only compacts each affected column once, no matter how many ticks are
+     * removed.
+     */
+    public void collect(int minX, int maxX, int minZ, int maxZ, Predicate<? super TickEntry<T>> predicate, boolean remove, List<? super TickEntry<T>> out) {
+        if (this.size == 0) {
+            return;
+        }
+
+        for (int x = minX; x <= maxX; x++) {
+            for (int z = minZ; z <= maxZ; z++) {
+                Column<T> ticks = this.columns[getColumn(x, z)];
+
+                if (ticks != null && ticks.size != 0) {
+                    this.size -= ticks.collect(predicate, remove, out);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of ticks in the column at the given local coordinates.
+     */
+    public int getColumnSize(int x, int z) {
+        Column<T> ticks = this.columns[getColumn(x, z)];
+
+        return ticks == null ? 0 : ticks.size;
+    }
+
+    /**
+     * Returns the tick at the given index, counted from the bottom, of the column at the given local coordinates.
+     */
+    public TickEntry<T> get(int x, int z, int index) {
+        return this.columns[getColumn(x, z)].ticks[index];
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    private static int getColumn(int x, int z) {
+        return (x << 4) | z;
+    }
+
+    /**
+     * Returns the key the tick at the given block position is sorted by within its chunk, by column and then by height.
+     */
+    static long getKey(int x, int y, int z) {
+        // The column in the upper 32 bits, the height shifted to be unsigned in the lower 32 bits
+        return ((long) getColumn(x & 15, z & 15) << 32) | ((long) y - Integer.MIN_VALUE);
+    }
+
+    private static class Column<T> {
+        @SuppressWarnings("unchecked")
+        private TickEntry<T>[] ticks = (TickEntry<T>[]) new TickEntry[INITIAL_COLUMN_CAPACITY];
+        private int size;
+
+        private void add(TickEntry<T> tick) {
+            int y = tick.pos.getY();
+
+            if (this.size >= this.ticks.length) {
+                this.ticks = copyOf(this.ticks, this.ticks.length * 2);
+            }
+
+            // Ticks added from the bottom up are appended without a search
+            int index = this.size == 0 || this.ticks[this.size - 1].pos.getY() <= y ? this.size : this.findIndex(y + 1);
+
+            System.arraycopy(this.ticks, index, this.ticks, index + 1, this.size - index);
+
+            this.ticks[index] = tick;
+            this.size++;
+        }
+
+        private boolean remove(TickEntry<T> tick) {
+            int y = tick.pos.getY();
+
+            for (int i = this.findIndex(y); i < this.size && this.ticks[i].pos.getY() == y; i++) {
+                if (this.ticks[i] == tick) {
+                    System.arraycopy(this.ticks, i + 1, this.ticks, i, this.size - i - 1);
+
+                    this.ticks[--this.size] = null;
+
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        // Returns the number of ticks removed
+        private int collect(Predicate<? super TickEntry<T>> predicate, boolean remove, List<? super TickEntry<T>> out) {
+            if (!remove) {
+                for (int i = 0; i < this.size; i++) {
+                    TickEntry<T> tick = this.ticks[i];
+
+                    if (predicate.test(tick)) {
+                        out.add(tick);
+                    }
+                }
+
+                return 0;
+            }
+
+            // Re-builds the column in-place
+            int w = 0;
+
+            for (int i = 0; i < this.size; i++) {
+                TickEntry<T> tick = this.ticks[i];
+
+                if (predicate.test(tick)) {
+                    out.add(tick);
+                    continue;
+                }
+
+                this.ticks[w++] = tick;
+            }
+
+            int removed = this.size - w;
+
+            for (int i = w; i < this.size; i++) {
+                this.ticks[i] = null;
+            }
+
+            this.size = w;
+
+            return removed;
+        }
+
+        // Returns the index of the first tick which is not below the given height
+        private int findIndex(int y) {
+            int low = 0;
+            int high = this.size;
+
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+
+                if (this.ticks[mid].pos.getY() < y) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+
+            return low;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> TickEntry<T>[] copyOf(TickEntry<T>[] src, int size) {
+        TickEntry<T>[] copy = (TickEntry<T>[]) new TickEntry[size];
+        System.arraycopy(src, 0, copy, 0, Math.min(src.length, size));
+
+        return copy;
+    }
+}
@@ -1,13 +1,13 @@
 package gribland.gribcore.lithium.common.world.scheduler;
 
-import it.unimi.dsi.fastutil.longs.Long2ObjectAVLTreeMap;
+import gribland.gribcore.config.GribCoreConfig;
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
-import it.unimi.dsi.fastutil.longs.Long2ObjectSortedMap;
-import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
+import it.unimi.dsi.fastutil.objects.Reference2ByteOpenHashMap;
 import net.minecraft.CrashReport;
 import net.minecraft.CrashReportCategory;
 import net.minecraft.ReportedException;
 import net.minecraft.core.BlockPos;
+import net.minecraft.nbt.ListTag;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.server.level.ServerChunkCache;
 import net.minecraft.server.level.ServerLevel;
@@ -16,6 +16,8 @@ import net.minecraft.world.level.ServerTickList;
 import net.minecraft.world.level.TickNextTickData;
 import net.minecraft.world.level.TickPriority;
 import net.minecraft.world.level.levelgen.structure.BoundingBox;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
 import java.util.*;
 import java.util.function.Consumer;
@@ -23,15 +25,43 @@ import java.util.function.Function;
 import java.util.function.Predicate;
 
 public class LithiumServerTickScheduler<T> extends ServerTickList<T> {
+    private static final Logger LOGGER = LogManager.getLogger("LithiumServerTickScheduler");
+
+    // One minute of game ticks
+    private static final long LIMIT_WARNING_INTERVAL = 1200L;
+
     private static final Predicate<TickEntry<?>> PREDICATE_ANY_TICK = entry -> true;
     private static final Predicate<TickEntry<?>> PREDICATE_ACTIVE_TICKS = entry -> !entry.consumed;
-    private final Long2ObjectSortedMap<TickEntryQueue<T>> scheduledTicksOrdered = new Long2ObjectAVLTreeMap<>();
-    private final Long2ObjectOpenHashMap<Set<TickEntry<T>>> scheduledTicksByChunk = new Long2ObjectOpenHashMap<>();
-    private final Map<TickNextTickData<T>, TickEntry<T>> scheduledTicks = new HashMap<>();
+    private final TickEntryTimingWheel<T> scheduledTicksOrdered;
+    private final Long2ObjectOpenHashMap<ChunkTickIndex<T>> scheduledTicksByChunk = new Long2ObjectOpenHashMap<>();
+    // Keyed by the packed block position, with the ticks of other types at the same position chained from the first
+    private final Long2ObjectOpenHashMap<TickEntry<T>> scheduledTicks = new Long2ObjectOpenHashMap<>();
+    private int scheduledCount;
     private final ArrayList<TickEntry<T>> executingTicks = new ArrayList<>();
     private final Predicate<T> invalidObjPredicate;
     private final ServerLevel world;
     private final Consumer<TickNextTickData<T>> tickConsumer;
+    private final Function<T, ResourceLocation> idToName;
+
+    // Reused by copy(BoundingBox, BlockPos)
+    private final ArrayList<TickEntry<T>> copyBuffer = new ArrayList<>();
+
+    // State of the current selectTicks call, kept in fields so that the queue visitor does not need to be allocated
+    private final Predicate<TickEntryQueue<T>> selectQueue = this::selectQueue;
+    private ServerChunkCache selectChunkManager;
+    private int selectLimit;
+    private boolean selectCanTick;
+    private long selectPrevChunk;
+
+    // Whether each type may be executed off-thread, -1 if not looked up yet
+    private final Reference2ByteOpenHashMap<T> parallelTypes = createParallelTypes();
+    private List<RegionTickExecutor.Region<T>> lastRegions = Collections.emptyList();
+
+    // Ticks scheduled from other threads, added at the start of the next tick
+    private final StagedTickBuffer<T> stagedTicks = new StagedTickBuffer<>();
+
+    private final TickSchedulerMetrics<T> metrics = TickSchedulerMetrics.ENABLED ? new TickSchedulerMetrics<>() : null;
+    private long lastLimitWarning = Long.MIN_VALUE;
 
     public LithiumServerTickScheduler(ServerLevel world, Predicate<T> invalidPredicate, Function<T, ResourceLocation> idToName, Consumer<TickNextTickData<T>> tickConsumer) {
         super(world, invalidPredicate, idToName, tickConsumer);
@@ -39,12 +69,16 @@ public class LithiumServerTickScheduler<T> extends ServerTickList<T> {
         this.invalidObjPredicate = invalidPredicate;
         this.world = world;
         this.tickConsumer = tickConsumer;
+        this.idToName = idToName;
+        this.scheduledTicksOrdered = new TickEntryTimingWheel<>(world.getGameTime());
     }
 
     @Override
     public void tick() {
         this.world.getProfiler().push("cleaning");
 
+        this.addStagedTicks();
+
         this.selectTicks(this.world.getChunkSource(), this.world.getGameTime());
 
         this.world.getProfiler().popPush("executing");
@@ -56,7 +90,7 @@ public class LithiumServerTickScheduler<T> extends ServerTickList<T> {
 
     @Override
     public boolean willTickThisTick(BlockPos pos, T obj) {
-        TickEntry<T> entry = this.scheduledTicks.get(new TickNextTickData<>(pos, obj));
+        TickEntry<T> entry = this.getTickEntry(pos, obj);
 
         if (entry == null) {
             return false;
@@ -67,7 +101,7 @@ public class LithiumServerTickScheduler<T> extends ServerTickList<T> {
 
     @Override
     public boolean hasScheduledTick(BlockPos pos, T obj) {
-        TickEntry<T> entry = this.scheduledTicks.get(new TickNextTickData<>(pos, obj));
+        TickEntry<T> entry = this.getTickEntry(pos, obj);
 
         if (entry == null) {
             return false;
@@ -78,30 +112,129 @@ public class LithiumServerTickScheduler<T> extends ServerTickList<T> {
 
     @Override
     public List<TickNextTickData<T>> fetchTicksInChunk(ChunkPos chunkPos, boolean mutates, boolean getStaleTicks) {
-        //[VanillaCopy] bug chunk steals ticks from neighboring chunk on unload + does so only in the negative direction
-        BoundingBox box = new BoundingBox(chunkPos.getMinBlockX() - 2, Integer.MIN_VALUE, chunkPos.getMinBlockZ() - 2, chunkPos.getMinBlockX() + 16, Integer.MAX_VALUE, chunkPos.getMinBlockZ() + 16);
+        return this.fetchTicksInArea(getChunkBox(chunkPos), mutates, getStaleTicks);
+    }
+
+    /**
+     * Saves the ticks of a chunk, streaming them into the tag instead of collecting them into a list first.
+     */
+    @Override
+    public ListTag save(ChunkPos chunkPos) {
+        this.addStagedTicks();
+
+        BoundingBox box = getChunkBox(chunkPos);
+
+        return saveTickList(this.idToName, () -> new TickAreaIterator(box), this.world.getGameTime());
+    }
 
-        return this.fetchTicksInArea(box, mutates, getStaleTicks);
+    private static BoundingBox getChunkBox(ChunkPos chunkPos) {
+        //[VanillaCopy] bug chunk steals ticks from neighboring chunk on unload + does so only in the negative direction
+        return new BoundingBox(chunkPos.getMinBlockX() - 2, Integer.MIN_VALUE, chunkPos.getMinBlockZ() - 2, chunkPos.getMinBlockX() + 16, Integer.MAX_VALUE, chunkPos.getMinBlockZ() + 16);
     }
 
     @Override
     public List<TickNextTickData<T>> fetchTicksInArea(BoundingBox box, boolean remove, boolean getStaleTicks) {
+        this.addStagedTicks();
+
         return this.collectTicks(box, remove, getStaleTicks ? PREDICATE_ANY_TICK : PREDICATE_ACTIVE_TICKS);
     }
 
+    /**
+     * Copies the active ticks within the bounds to the same positions moved by the offset, in one pass over the chunks
+     * they are copied into.
+     */
     @Override
     public void copy(BoundingBox box, BlockPos pos) {
-        List<TickNextTickData<T>> list = this.fetchTicksInArea(box, false, false);
+        this.addStagedTicks();
+
+        // The source and destination may overlap, so the ticks to copy are gathered first
+        ArrayList<TickEntry<T>> ticks = this.copyBuffer;
+        this.collectTicks(box, false, PREDICATE_ACTIVE_TICKS, ticks);
 
-        for (TickNextTickData<T> tick : list) {
-            this.addScheduledTick(new TickNextTickData<>(tick.pos.offset(pos), tick.getType(), tick.triggerTick, tick.priority));
+        if (ticks.isEmpty()) {
+            return;
         }
+
+        int offsetX = pos.getX();
+        int offsetY = pos.getY();
+        int offsetZ = pos.getZ();
+
+        // Grouped by destination chunk and sorted like the chunk index, so that every destination index only has to be
+        // looked up once, and every column of it is then filled by appending
+        ticks.sort((a, b) -> {
+            int cmp = Long.compare(ChunkPos.asLong((a.pos.getX() + offsetX) >> 4, (a.pos.getZ() + offsetZ) >> 4),
+                    ChunkPos.asLong((b.pos.getX() + offsetX) >> 4, (b.pos.getZ() + offsetZ) >> 4));
+
+            if (cmp != 0) {
+                return cmp;
+            }
+
+            return Long.compare(ChunkTickIndex.getKey(a.pos.getX() + offsetX, a.pos.getY() + offsetY, a.pos.getZ() + offsetZ),
+                    ChunkTickIndex.getKey(b.pos.getX() + offsetX, b.pos.getY() + offsetY, b.pos.getZ() + offsetZ));
+        });
+
+        int start = 0;
+
+        while (start < ticks.size()) {
+            TickEntry<T> first = ticks.get(start);
+            int chunkX = (first.pos.getX() + offsetX) >> 4;
+            int chunkZ = (first.pos.getZ() + offsetZ) >> 4;
+
+            int end = start + 1;
+
+            while (end < ticks.size()) {
+                TickEntry<T> tick = ticks.get(end);
+
+                if ((tick.pos.getX() + offsetX) >> 4 != chunkX || (tick.pos.getZ() + offsetZ) >> 4 != chunkZ) {
+                    break;
+                }
+
+                end++;
+            }
+
+            long chunk = ChunkPos.asLong(chunkX, chunkZ);
+            ChunkTickIndex<T> index = this.scheduledTicksByChunk.get(chunk);
+
+            // Without any ticks in the destination chunk, none of the copies can already exist
+            boolean empty = index == null;
+
+            if (empty) {
+                this.scheduledTicksByChunk.put(chunk, index = new ChunkTickIndex<>());
+            }
+
+            for (int i = start; i < end; i++) {
+                TickEntry<T> tick = ticks.get(i);
+                BlockPos dest = tick.pos.offset(offsetX, offsetY, offsetZ);
+                TickEntry<T> entry = empty ? null : this.getTickEntry(dest, tick.getType());
+
+                if (entry == null) {
+                    entry = this.createTickEntry(dest, tick.getType(), tick.triggerTick, tick.priority, index);
+                }
+
+                this.scheduleTickEntry(entry, tick.triggerTick, tick.priority);
+            }
+
+            start = end;
+        }
+
+        ticks.clear();
     }
 
     @Override
     public void scheduleTick(BlockPos pos, T obj, int delay, TickPriority priority) {
         if (!this.invalidObjPredicate.test(obj)) {
-            this.addScheduledTick(new TickNextTickData<>(pos, obj, (long) delay + this.world.getGameTime(), priority));
+            long time = (long) delay + this.world.getGameTime();
+
+            // Threads other than the server thread and the region workers may schedule at any time, so their ticks
+            // always go to the lock-free buffer. The scheduler can not be modified while ticks are executing on the
+            // workers, so those two stage their ticks in the region executor meanwhile
+            if (!this.world.getServer().isSameThread() && !RegionTickExecutor.isWorkerThread()) {
+                this.stagedTicks.push(pos, obj, time, priority);
+            } else if (RegionTickExecutor.isStaging()) {
+                RegionTickExecutor.stage(this, pos, obj, time, priority);
+            } else {
+                this.addScheduledTick(pos, obj, time, priority);
+            }
         }
     }
 
@@ -110,202 +243,492 @@ public class LithiumServerTickScheduler<T> extends ServerTickList<T> {
      */
     @Override
     public int size() {
-        int count = 0;
-
-        for (TickEntry<T> entry : this.scheduledTicks.values()) {
-            if (entry.scheduled) {
-                count += 1;
-            }
-        }
-
-        return count;
+        return this.scheduledCount;
     }
 
     /**
      * Enqueues all scheduled ticks before the specified time and prepares them for execution.
      */
     public void selectTicks(ServerChunkCache chunkManager, long time) {
-        // Calculates the maximum key value which includes all ticks scheduled before the specified time
-        long headKey = getBucketKey(time + 1, TickPriority.EXTREMELY_HIGH) - 1;
-
         // [VanillaCopy] ServerTickScheduler#tick
         // In order to fulfill the promise of not breaking vanilla behaviour, we keep the vanilla artifact of
         // tick suppression.
-        int limit = 65536;
+        this.selectLimit = 65536;
+
+        this.selectCanTick = true;
+        this.selectPrevChunk = Long.MIN_VALUE;
+        this.selectChunkManager = chunkManager;
+
+        // Iterate over all scheduled ticks up to the specified time and enqueue them until we exceed our budget
+        this.scheduledTicksOrdered.select(time, this.selectQueue);
+
+        this.selectChunkManager = null;
+
+        if (this.selectLimit <= 0) {
+            this.onTickLimitReached(time);
+        }
+    }
+
+    // Tick suppression is otherwise silent, so at least leave a trace of it in the log
+    private void onTickLimitReached(long time) {
+        if (TickSchedulerMetrics.ENABLED) {
+            this.metrics.recordLimitHit();
+        }
+
+        if (time - this.lastLimitWarning >= LIMIT_WARNING_INTERVAL) {
+            this.lastLimitWarning = time;
 
-        boolean canTick = true;
-        long prevChunk = Long.MIN_VALUE;
+            LOGGER.warn("Reached the limit of 65536 scheduled ticks per game tick in {}, any further due ticks are deferred ({} still scheduled)",
+                    this.world.dimension().location(), this.scheduledCount);
+        }
+    }
+
+    // Returns whether the next queue should be visited
+    private boolean selectQueue(TickEntryQueue<T> list) {
+        // Pointer for writing scheduled ticks back into the queue
+        int w = 0;
+
+        // Re-builds the scheduled tick queue in-place
+        for (int i = 0; i < list.size(); i++) {
+            TickEntry<T> tick = list.getTickAtIndex(i);
 
-        // Create an iterator over only
-        Iterator<TickEntryQueue<T>> it = this.scheduledTicksOrdered.headMap(headKey).values().iterator();
+            if (!tick.scheduled) {
+                continue;
+            }
+
+            // If no more ticks can be scheduled for execution this phase, then we leave it in its current time
+            // bucket and skip it. This deliberately introduces a bug where backlogged ticks will not be re-scheduled
+            // properly, re-producing the vanilla issue of tick suppression.
+            if (this.selectLimit > 0) {
+                long chunk = ChunkPos.asLong(tick.pos.getX() >> 4, tick.pos.getZ() >> 4);
+
+                // Take advantage of the fact that if any position in a chunk can be updated, then all other positions
+                // in the same chunk can be updated. This avoids the more expensive check to the chunk manager.
+                if (this.selectPrevChunk != chunk) {
+                    this.selectPrevChunk = chunk;
+                    this.selectCanTick = this.selectChunkManager.isTickingChunk(tick.pos);
+                }
 
-        // Iterate over all scheduled ticks and enqueue them for until we exceed our budget
-        while (limit > 0 && it.hasNext()) {
-            TickEntryQueue<T> list = it.next();
+                // If the tick can be executed right now, then add it to the executing list and decrement our
+                // budget limit.
+                if (this.selectCanTick) {
+                    tick.scheduled = false;
+                    this.scheduledCount--;
+                    tick.executing = true;
 
-            // Pointer for writing scheduled ticks back into the queue
-            int w = 0;
+                    this.executingTicks.add(tick);
 
-            // Re-builds the scheduled tick queue in-place
-            for (int i = 0; i < list.size(); i++) {
-                TickEntry<T> tick = list.getTickAtIndex(i);
+                    this.selectLimit--;
 
-                if (!tick.scheduled) {
+                    // Avoids the tick being kept in the scheduled queue
                     continue;
                 }
+            } else if (TickSchedulerMetrics.ENABLED) {
+                this.metrics.recordDeferred();
+            }
+
+            // Nothing happened to this tick, so re-add it to the queue
+            list.setTickAtIndex(w++, tick);
+        }
+
+        // Finalize our changes to the queue and notify it of the new length
+        list.resize(w);
+
+        // With metrics enabled, the remaining due queues are still visited after the limit was reached, only to count
+        // the ticks deferred in them
+        return this.selectLimit > 0 || TickSchedulerMetrics.ENABLED;
+    }
+
+    public void executeTicks(Consumer<TickNextTickData<T>> consumer) {
+        if (GribCoreConfig.LITHIUM_PARALLEL_TICKS && !this.executingTicks.isEmpty()) {
+            this.executeTicksByRegion(consumer);
+        } else {
+            // Mark and execute all executing ticks
+            for (TickEntry<T> tick : this.executingTicks) {
+                this.executeTick(tick, consumer);
+            }
+        }
+
+        // We finished executing those ticks, so empty the list.
+        this.executingTicks.clear();
+    }
+
+    private void executeTick(TickEntry<T> tick, Consumer<TickNextTickData<T>> consumer) {
+        try {
+            // Mark as consumed before execution per vanilla behaviour
+            tick.executing = false;
+
+            // Perform tick execution
+            if (TickSchedulerMetrics.ENABLED) {
+                long start = System.nanoTime();
+
+                consumer.accept(tick);
+
+                this.metrics.recordExecuted(tick, System.nanoTime() - start);
+            } else {
+                consumer.accept(tick);
+            }
+
+            // If the tick didn't get re-scheduled, we're finished and this tick should be deleted
+            if (!tick.scheduled) {
+                this.removeTickEntry(tick);
+            }
+        } catch (Throwable e) {
+            throw createTickException(tick, e);
+        }
+    }
 
-                // If no more ticks can be scheduled for execution this phase, then we leave it in its current time
-                // bucket and skip it. This deliberately introduces a bug where backlogged ticks will not be re-scheduled
-                // properly, re-producing the vanilla issue of tick suppression.
-                if (limit > 0) {
-                    long chunk = ChunkPos.asLong(tick.pos.getX() >> 4, tick.pos.getZ() >> 4);
-
-                    // Take advantage of the fact that if any position in a chunk can be updated, then all other positions
-                    // in the same chunk can be updated. This avoids the more expensive check to the chunk manager.
-                    if (prevChunk != chunk) {
-                        prevChunk = chunk;
-                        canTick = chunkManager.isTickingChunk(tick.pos);
+    private void executeTicksByRegion(Consumer<TickNextTickData<T>> consumer) {
+        Long2ObjectOpenHashMap<RegionTickExecutor.Region<T>> regionsByKey = new Long2ObjectOpenHashMap<>();
+        List<RegionTickExecutor.Region<T>> regions = new ArrayList<>();
+
+        for (TickEntry<T> tick : this.executingTicks) {
+            long key = RegionTickExecutor.Region.getKey(tick.pos);
+            RegionTickExecutor.Region<T> region = regionsByKey.get(key);
+
+            if (region == null) {
+                region = new RegionTickExecutor.Region<>(tick.pos.getX() >> RegionTickExecutor.REGION_SHIFT, tick.pos.getZ() >> RegionTickExecutor.REGION_SHIFT);
+
+                regionsByKey.put(key, region);
+                regions.add(region);
+            }
+
+            region.ticks.add(tick);
+
+            if (region.parallel && (RegionTickExecutor.Region.isNearBorder(tick.pos) || !this.isParallelType(tick.getType()))) {
+                region.parallel = false;
+            }
+        }
+
+        List<RegionTickExecutor.Region<T>> parallel = new ArrayList<>();
+
+        for (RegionTickExecutor.Region<T> region : regions) {
+            if (region.parallel) {
+                parallel.add(region);
+            }
+        }
+
+        // A single region would only wait on another thread
+        if (parallel.size() >= 2) {
+            RegionTickExecutor.execute(parallel, region -> {
+                if (TickSchedulerMetrics.ENABLED) {
+                    region.tickNanos = new long[region.ticks.size()];
+                }
+
+                for (int i = 0; i < region.ticks.size(); i++) {
+                    TickEntry<T> tick = region.ticks.get(i);
+
+                    try {
+                        tick.executing = false;
+
+                        if (TickSchedulerMetrics.ENABLED) {
+                            long start = System.nanoTime();
+
+                            consumer.accept(tick);
+
+                            region.tickNanos[i] = System.nanoTime() - start;
+                        } else {
+                            consumer.accept(tick);
+                        }
+                    } catch (Throwable e) {
+                        region.failedTick = tick;
+                        region.failure = e;
+
+                        break;
                     }
+                }
+            });
 
-                    // If the tick can be executed right now, then add it to the executing list and decrement our
-                    // budget limit.
-                    if (canTick) {
-                        tick.scheduled = false;
-                        tick.executing = true;
+            for (RegionTickExecutor.Region<T> region : parallel) {
+                if (region.failure != null) {
+                    throw createTickException(region.failedTick, region.failure);
+                }
 
-                        this.executingTicks.add(tick);
+                // Removal was deferred until the staged ticks were added, as the scheduler can not be modified from
+                // the workers
+                for (int i = 0; i < region.ticks.size(); i++) {
+                    TickEntry<T> tick = region.ticks.get(i);
 
-                        limit--;
+                    if (TickSchedulerMetrics.ENABLED) {
+                        this.metrics.recordExecuted(tick, region.tickNanos[i]);
+                    }
 
-                        // Avoids the tick being kept in the scheduled queue
-                        continue;
+                    if (!tick.scheduled) {
+                        this.removeTickEntry(tick);
                     }
                 }
+            }
+        } else {
+            for (RegionTickExecutor.Region<T> region : parallel) {
+                region.parallel = false;
+            }
+        }
+
+        // Everything else runs in its original order, timed per region
+        RegionTickExecutor.Region<T> prevRegion = null;
+        long prevStart = 0L;
+
+        for (TickEntry<T> tick : this.executingTicks) {
+            RegionTickExecutor.Region<T> region = regionsByKey.get(RegionTickExecutor.Region.getKey(tick.pos));
 
-                // Nothing happened to this tick, so re-add it to the queue
-                list.setTickAtIndex(w++, tick);
+            if (region.parallel) {
+                continue;
             }
 
-            // Finalize our changes to the queue and notify it of the new length
-            list.resize(w);
+            long now = System.nanoTime();
 
-            // If the queue is empty, remove it from the map
-            if (list.isEmpty()) {
-                it.remove();
+            if (prevRegion != null) {
+                prevRegion.nanos += now - prevStart;
             }
+
+            prevRegion = region;
+            prevStart = now;
+
+            this.executeTick(tick, consumer);
+        }
+
+        if (prevRegion != null) {
+            prevRegion.nanos += System.nanoTime() - prevStart;
         }
+
+        this.lastRegions = regions;
     }
 
-    public void executeTicks(Consumer<TickNextTickData<T>> consumer) {
-        // Mark and execute all executing ticks
-        for (TickEntry<T> tick : this.executingTicks) {
-            try {
-                // Mark as consumed before execution per vanilla behaviour
-                tick.executing = false;
+    private boolean isParallelType(T type) {
+        byte parallel = this.parallelTypes.getByte(type);
 
-                // Perform tick execution
-                consumer.accept(tick);
+        if (parallel == -1) {
+            parallel = RegionTickExecutor.isParallelType(this.idToName.apply(type)) ? (byte) 1 : (byte) 0;
 
-                // If the tick didn't get re-scheduled, we're finished and this tick should be deleted
-                if (!tick.scheduled) {
-                    this.removeTickEntry(tick);
-                }
-            } catch (Throwable e) {
-                CrashReport crash = CrashReport.forThrowable(e, "Exception while ticking");
-                CrashReportCategory section = crash.addCategory("Block being ticked");
-                CrashReportCategory.populateBlockDetails(section, tick.pos, null);
+            this.parallelTypes.put(type, parallel);
+        }
+
+        return parallel == 1;
+    }
+
+    /**
+     * Returns a human readable summary of the recorded metrics, see {@link TickSchedulerMetrics#report}. Must only be
+     * called if metrics are enabled.
+     */
+    public List<String> reportMetrics(int top) {
+        long time = this.world.getGameTime();
+        long[] delays = new long[this.scheduledCount];
+        int i = 0;
 
-                throw new ReportedException(crash);
+        for (TickEntry<T> entry : this.scheduledTicks.values()) {
+            for (; entry != null; entry = entry.nextAtPos) {
+                if (entry.scheduled && i < delays.length) {
+                    delays[i++] = entry.triggerTick - time;
+                }
             }
         }
 
+        return this.metrics.report(delays, this.idToName, top);
+    }
 
-        // We finished executing those ticks, so empty the list.
-        this.executingTicks.clear();
+    public void resetMetrics() {
+        this.metrics.reset();
+    }
+
+    /**
+     * Returns the regions of the last execution of ticks by region, slowest first.
+     */
+    public List<RegionTickExecutor.Region<T>> getLastRegions() {
+        List<RegionTickExecutor.Region<T>> regions = new ArrayList<>(this.lastRegions);
+        regions.sort(Comparator.comparingLong((RegionTickExecutor.Region<T> region) -> region.nanos).reversed());
+
+        return regions;
+    }
+
+    private static ReportedException createTickException(TickEntry<?> tick, Throwable e) {
+        CrashReport crash = CrashReport.forThrowable(e, "Exception while ticking");
+        CrashReportCategory section = crash.addCategory("Block being ticked");
+        CrashReportCategory.populateBlockDetails(section, tick.pos, null);
+
+        return new ReportedException(crash);
     }
 
     private List<TickNextTickData<T>> collectTicks(BoundingBox bounds, boolean remove, Predicate<TickEntry<?>> predicate) {
         List<TickNextTickData<T>> ret = new ArrayList<>();
 
-        int minChunkX = bounds.x0 >> 4;
-        int maxChunkX = bounds.x1 >> 4;
+        this.collectTicks(bounds, remove, predicate, ret);
 
-        int minChunkZ = bounds.z0 >> 4;
-        int maxChunkZ = bounds.z1 >> 4;
+        return ret;
+    }
+
+    private void collectTicks(BoundingBox bounds, boolean remove, Predicate<TickEntry<?>> predicate, List<? super TickEntry<T>> ret) {
+        // [VanillaCopy] ServerTickScheduler#transferTickInBounds
+        // The minimum coordinate is include while the maximum coordinate is exclusive
+        // Possibly a bug in vanilla, but we need to match it here.
+        int minX = bounds.x0;
+        int maxX = bounds.x1 - 1;
+        int minZ = bounds.z0;
+        int maxZ = bounds.z1 - 1;
+
+        if (minX > maxX || minZ > maxZ) {
+            return;
+        }
 
         // Iterate over all chunks encompassed by the block box
-        for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
-            for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+        for (int chunkX = minX >> 4; chunkX <= maxX >> 4; chunkX++) {
+            for (int chunkZ = minZ >> 4; chunkZ <= maxZ >> 4; chunkZ++) {
                 long chunk = ChunkPos.asLong(chunkX, chunkZ);
 
-                Set<TickEntry<T>> set = this.scheduledTicksByChunk.get(chunk);
+                ChunkTickIndex<T> index = this.scheduledTicksByChunk.get(chunk);
 
-                if (set == null) {
+                if (index == null) {
                     continue;
                 }
 
-                for (TickEntry<T> tick : set) {
-                    BlockPos pos = tick.pos;
+                int start = ret.size();
 
-                    // [VanillaCopy] ServerTickScheduler#transferTickInBounds
-                    // The minimum coordinate is include while the maximum coordinate is exclusive
-                    // Possibly a bug in vanilla, but we need to match it here.
-                    if (pos.getX() >= bounds.x0 && pos.getX() < bounds.x1 && pos.getZ() >= bounds.z0 && pos.getZ() < bounds.z1) {
-                        if (predicate.test(tick)) {
-                            ret.add(tick);
-                        }
+                // Only the columns within the bounds are visited
+                index.collect(Math.max(minX - (chunkX << 4), 0), Math.min(maxX - (chunkX << 4), 15),
+                        Math.max(minZ - (chunkZ << 4), 0), Math.min(maxZ - (chunkZ << 4), 15), predicate, remove, ret);
+
+                if (remove) {
+                    // The chunk index already dropped the ticks in one pass, so only the other indexes are left
+                    for (int i = start; i < ret.size(); i++) {
+                        // It's not possible to downcast a collection, so we have to upcast here
+                        // This will always succeed
+                        this.releaseTickEntry((TickEntry<T>) ret.get(i));
+                    }
+
+                    if (index.isEmpty()) {
+                        this.scheduledTicksByChunk.remove(chunk);
                     }
                 }
             }
         }
+    }
 
-        if (remove) {
-            for (TickNextTickData<T> tick : ret) {
-                // It's not possible to downcast a collection, so we have to upcast here
-                // This will always succeed
-                this.removeTickEntry((TickEntry<T>) tick);
-            }
+    /**
+     * Adds the ticks which were scheduled from other threads since the last call. Does nothing unless called on the
+     * server thread while the scheduler can be modified.
+     */
+    public void addStagedTicks() {
+        if (this.stagedTicks.isEmpty() || RegionTickExecutor.isStaging() || !this.world.getServer().isSameThread()) {
+            return;
         }
 
-        return ret;
+        for (StagedTickBuffer.Node<T> tick : this.stagedTicks.drain(this.idToName)) {
+            this.addScheduledTick(tick.pos, tick.type, tick.time, tick.priority);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    void addStagedTick(BlockPos pos, Object obj, long time, TickPriority priority) {
+        this.addScheduledTick(pos, (T) obj, time, priority);
     }
 
     /**
      * Schedules a tick for execution if it has not already been. To match vanilla, we do not re-schedule matching
      * scheduled ticks which are set to execute at a different time.
      */
-    private void addScheduledTick(TickNextTickData<T> tick) {
-        TickEntry<T> entry = this.scheduledTicks.computeIfAbsent(tick, this::createTickEntry);
+    private void addScheduledTick(BlockPos pos, T obj, long time, TickPriority priority) {
+        TickEntry<T> entry = this.getTickEntry(pos, obj);
+
+        if (entry == null) {
+            entry = this.createTickEntry(pos, obj, time, priority);
+        }
 
+        this.scheduleTickEntry(entry, time, priority);
+    }
+
+    // The entry may be reused from a tick which is executing right now and re-schedules itself, so the bucket is
+    // always chosen by the requested time and priority, never by the ones the entry was created with
+    private void scheduleTickEntry(TickEntry<T> entry, long time, TickPriority priority) {
         if (!entry.scheduled) {
-            TickEntryQueue<T> timeIdx = this.scheduledTicksOrdered.computeIfAbsent(getBucketKey(tick.triggerTick, tick.priority), key -> new TickEntryQueue<>());
-            timeIdx.push(entry);
+            this.scheduledTicksOrdered.push(getBucketKey(time, priority), entry);
 
             entry.scheduled = true;
+            this.scheduledCount++;
+
+            if (TickSchedulerMetrics.ENABLED) {
+                this.metrics.recordScheduled();
+            }
         }
     }
 
-    private TickEntry<T> createTickEntry(TickNextTickData<T> tick) {
-        Set<TickEntry<T>> chunkIdx = this.scheduledTicksByChunk.computeIfAbsent(getChunkKey(tick.pos), LithiumServerTickScheduler::createChunkIndex);
+    // Matches ticks the same way as TickNextTickData#equals, by position and type
+    private TickEntry<T> getTickEntry(BlockPos pos, T obj) {
+        TickEntry<T> entry = this.scheduledTicks.get(pos.asLong());
 
-        return new TickEntry<>(tick, chunkIdx);
+        while (entry != null && entry.getType() != obj) {
+            entry = entry.nextAtPos;
+        }
+
+        return entry;
     }
 
-    private void removeTickEntry(TickEntry<T> tick) {
-        tick.scheduled = false;
-        tick.consumed = true;
+    private TickEntry<T> createTickEntry(BlockPos pos, T obj, long time, TickPriority priority) {
+        ChunkTickIndex<T> chunkIdx = this.scheduledTicksByChunk.computeIfAbsent(getChunkKey(pos), LithiumServerTickScheduler::createChunkIndex);
 
+        return this.createTickEntry(pos, obj, time, priority, chunkIdx);
+    }
+
+    private TickEntry<T> createTickEntry(BlockPos pos, T obj, long time, TickPriority priority, ChunkTickIndex<T> chunkIdx) {
+        TickEntry<T> entry = new TickEntry<>(pos, obj, time, priority, chunkIdx);
+
+        entry.nextAtPos = this.scheduledTicks.put(pos.asLong(), entry);
+
+        return entry;
+    }
+
+    private void removeTickEntry(TickEntry<T> tick) {
         tick.chunkIdx.remove(tick);
 
         if (tick.chunkIdx.isEmpty()) {
             this.scheduledTicksByChunk.remove(getChunkKey(tick.pos));
         }
 
-        this.scheduledTicks.remove(tick);
+        this.releaseTickEntry(tick);
     }
 
-    private static <T> Set<TickEntry<T>> createChunkIndex(long pos) {
-        return new ObjectOpenHashSet<>(8);
+    // Marks the tick as consumed and removes it from every index except the chunk index
+    private void releaseTickEntry(TickEntry<T> tick) {
+        if (tick.scheduled) {
+            tick.scheduled = false;
+            this.scheduledCount--;
+        }
+
+        tick.consumed = true;
+
+        this.unlinkTickEntry(tick);
+    }
+
+    private void unlinkTickEntry(TickEntry<T> tick) {
+        long key = tick.pos.asLong();
+        TickEntry<T> entry = this.scheduledTicks.get(key);
+
+        if (entry == tick) {
+            if (tick.nextAtPos == null) {
+                this.scheduledTicks.remove(key);
+            } else {
+                this.scheduledTicks.put(key, tick.nextAtPos);
+            }
+        } else {
+            while (entry != null && entry.nextAtPos != tick) {
+                entry = entry.nextAtPos;
+            }
+
+            if (entry != null) {
+                entry.nextAtPos = tick.nextAtPos;
+            }
+        }
+
+        tick.nextAtPos = null;
+    }
+
+    private static <T> Reference2ByteOpenHashMap<T> createParallelTypes() {
+        Reference2ByteOpenHashMap<T> map = new Reference2ByteOpenHashMap<>();
+        map.defaultReturnValue((byte) -1);
+
+        return map;
+    }
+
+    private static <T> ChunkTickIndex<T> createChunkIndex(long pos) {
+        return new ChunkTickIndex<>();
     }
 
     // Computes a chunk key from a block position
@@ -319,4 +742,109 @@ public class LithiumServerTickScheduler<T> extends ServerTickList<T> {
     private static long getBucketKey(long time, TickPriority priority) {
         return (time << 4L) | (priority.ordinal() & 15);
     }
-}
\ No newline at end of file
+
+    /**
+     * Iterates every tick within the bounds (with the same exclusive maximum as {@link #collectTicks}) without collecting
+     * them, chunk by chunk and column by column.
+     */
+    private class TickAreaIterator implements Iterator<TickNextTickData<T>> {
+        private final int minX, maxX, minZ, maxZ;
+
+        private int chunkX, chunkZ;
+        private ChunkTickIndex<T> index;
+        private int localX, localZ, localMaxX, localMinZ, localMaxZ;
+        private int i;
+
+        private TickEntry<T> next;
+
+        TickAreaIterator(BoundingBox bounds) {
+            this.minX = bounds.x0;
+            this.maxX = bounds.x1 - 1;
+            this.minZ = bounds.z0;
+            this.maxZ = bounds.z1 - 1;
+
+            // The first call to nextChunk() advances to the first chunk
+            this.chunkX = this.minX >> 4;
+            this.chunkZ = (this.minZ >> 4) - 1;
+
+            if (this.minX <= this.maxX && this.minZ <= this.maxZ) {
+                this.advance();
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.next != null;
+        }
+
+        @Override
+        public TickNextTickData<T> next() {
+            TickEntry<T> tick = this.next;
+
+            if (tick == null) {
+                throw new NoSuchElementException();
+            }
+
+            this.advance();
+
+            return tick;
+        }
+
+        private void advance() {
+            while (true) {
+                if (this.index != null) {
+                    if (this.i < this.index.getColumnSize(this.localX, this.localZ)) {
+                        this.next = this.index.get(this.localX, this.localZ, this.i++);
+                        return;
+                    }
+
+                    this.i = 0;
+
+                    if (this.localZ < this.localMaxZ) {
+                        this.localZ++;
+                        continue;
+                    }
+
+                    if (this.localX < this.localMaxX) {
+                        this.localX++;
+                        this.localZ = this.localMinZ;
+                        continue;
+                    }
+                }
+
+                if (!this.nextChunk()) {
+                    this.next = null;
+                    return;
+                }
+            }
+        }
+
+        private boolean nextChunk() {
+            while (true) {
+                if (++this.chunkZ > this.maxZ >> 4) {
+                    this.chunkZ = this.minZ >> 4;
+
+                    if (++this.chunkX > this.maxX >> 4) {
+                        this.index = null;
+                        return false;
+                    }
+                }
+
+                this.index = LithiumServerTickScheduler.this.scheduledTicksByChunk.get(ChunkPos.asLong(this.chunkX, this.chunkZ));
+
+                if (this.index == null) {
+                    continue;
+                }
+
+                this.localX = Math.max(this.minX - (this.chunkX << 4), 0);
+                this.localMaxX = Math.min(this.maxX - (this.chunkX << 4), 15);
+                this.localMinZ = Math.max(this.minZ - (this.chunkZ << 4), 0);
+                this.localMaxZ = Math.min(this.maxZ - (this.chunkZ << 4), 15);
+                this.localZ = this.localMinZ;
+                this.i = 0;
+
+                return true;
+            }
+        }
+    }
+}
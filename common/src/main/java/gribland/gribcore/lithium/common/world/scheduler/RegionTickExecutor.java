@@ -0,0 +1,328 @@
+package gribland.gribcore.lithium.common.world.scheduler;
+
+import gribland.gribcore.config.GribCoreConfig;
+import net.minecraft.ResourceLocationException;
+import net.minecraft.core.BlockPos;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.level.TickPriority;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Runs the scheduled ticks of independent regions on a worker pool, see {@link GribCoreConfig#LITHIUM_PARALLEL_TICKS}.
+ *
+ * The world is split into square regions of {@link #REGION_SIZE} blocks. A region is only executed off-thread if every
+ * tick in it is of a type listed in {@link GribCoreConfig#LITHIUM_PARALLEL_TICK_TYPES} and none of them is within
+ * {@link #REGION_MARGIN} blocks of the region's border. Every other region runs serially on the server thread after the
+ * parallel regions have finished, in the original order of its ticks.
+ *
+ * While regions are executing, the schedulers must not be modified, so ticks scheduled from any thread are staged and
+ * only added once every region has finished, in region order. Chunks requested by a worker which are not already loaded
+ * are fetched by the server thread, which waits for the workers by running those requests.
+ *
+ * A listed type only decides where a region may run, the ticks still update their neighbours, and those can be of any
+ * type. Calls into world state which is shared by every region are therefore {@link #defer deferred} by the world mixins
+ * while a worker runs them: block events, entity spawns and point of interest updates are replayed on the server thread
+ * once every region has finished, in region order, and the profiler of the server is replaced by an inactive one.
+ */
+public final class RegionTickExecutor {
+    private static final Logger LOGGER = LogManager.getLogger("RegionTickExecutor");
+
+    /**
+     * The size of a region in blocks along each horizontal axis as a power of two (32 chunks).
+     */
+    public static final int REGION_SHIFT = 9;
+    public static final int REGION_SIZE = 1 << REGION_SHIFT;
+
+    private static final int MAX_SIGNAL_DISTANCE = 15;
+    private static final int DUST_UPDATE_DISTANCE = 2;
+    private static final int NEIGHBOUR_READ_DISTANCE = 1;
+
+    /**
+     * The distance in blocks from the border of a region within which a tick forces its region to run serially. It is the
+     * furthest a tick can reach synchronously, per axis, through vanilla redstone:
+     * <ul>
+     * <li>a component at the tick position powers redstone dust in front of it, and dust carries the signal
+     * {@link #MAX_SIGNAL_DISTANCE} blocks away from the component;</li>
+     * <li>every dust which changes updates the neighbours of each of its neighbours, {@link #DUST_UPDATE_DISTANCE} blocks
+     * further;</li>
+     * <li>the updated blocks read their own neighbours, {@link #NEIGHBOUR_READ_DISTANCE} block further.</li>
+     * </ul>
+     * Repeaters, comparators, torches and observers react to a neighbour update by scheduling a tick, which is staged,
+     * and pistons and note blocks by queueing a block event, which is deferred, so none of them extend the chain. Powered
+     * rails only carry power 8 blocks. Types which reach further than redstone dust must not be listed as parallel.
+     */
+    public static final int REGION_MARGIN = MAX_SIGNAL_DISTANCE + DUST_UPDATE_DISTANCE + NEIGHBOUR_READ_DISTANCE;
+
+    private static final Set<ResourceLocation> PARALLEL_TYPES = parseTypes(GribCoreConfig.LITHIUM_PARALLEL_TICK_TYPES);
+
+    private static final ThreadLocal<Region<?>> CURRENT_REGION = new ThreadLocal<>();
+
+    // Chunk requests of the workers, run by the server thread while it waits
+    private static final Queue<Runnable> MAIN_THREAD_TASKS = new ConcurrentLinkedQueue<>();
+    private static final Executor MAIN_THREAD_EXECUTOR = RegionTickExecutor::submitMainThreadTask;
+
+    // Ticks scheduled by the server thread while regions are executing
+    private static final List<StagedTick> MAIN_THREAD_STAGED = new ArrayList<>();
+
+    private static volatile boolean executing;
+    private static volatile Thread waitingThread;
+
+    private RegionTickExecutor() {
+        throw new RuntimeException();
+    }
+
+    /**
+     * Returns whether the configuration allows ticks of the type with the given id to run off-thread.
+     */
+    public static boolean isParallelType(ResourceLocation id) {
+        return PARALLEL_TYPES.contains(id);
+    }
+
+    /**
+     * Returns whether the current thread is executing a region of ticks.
+     */
+    public static boolean isWorkerThread() {
+        return Thread.currentThread() instanceof WorkerThread;
+    }
+
+    /**
+     * Returns the executor which runs tasks of the workers on the server thread while it waits for them. Workers must use
+     * this instead of the server's main thread executor, which does not run until all regions are done.
+     */
+    public static Executor getMainThreadExecutor() {
+        return MAIN_THREAD_EXECUTOR;
+    }
+
+    /**
+     * Returns whether ticks scheduled right now must be staged instead of being added to their scheduler.
+     */
+    public static boolean isStaging() {
+        return executing;
+    }
+
+    /**
+     * Defers a call which modifies world state shared between regions until every region has finished, if the current
+     * thread is executing a region. Returns whether the call was deferred, otherwise it has to run right away.
+     */
+    public static boolean defer(Runnable call) {
+        Region<?> region = CURRENT_REGION.get();
+
+        if (region == null) {
+            return false;
+        }
+
+        region.deferred.add(call);
+
+        return true;
+    }
+
+    /**
+     * Stages a tick to be added to the scheduler once all regions have finished executing. Must only be called by the
+     * server thread or a region worker, other threads stage their ticks in the scheduler itself.
+     */
+    public static void stage(LithiumServerTickScheduler<?> scheduler, BlockPos pos, Object type, long time, TickPriority priority) {
+        StagedTick tick = new StagedTick(scheduler, pos.immutable(), type, time, priority);
+        Region<?> region = CURRENT_REGION.get();
+
+        if (region != null) {
+            region.staged.add(tick);
+        } else {
+            MAIN_THREAD_STAGED.add(tick);
+        }
+    }
+
+    /**
+     * Executes the regions on the worker pool and blocks until all of them are finished. Exceptions thrown by the action
+     * are not caught, so the action has to record them itself. The calls deferred and the ticks staged while the regions
+     * were executing are run and added to their schedulers before returning.
+     */
+    public static <T> void execute(List<Region<T>> regions, Consumer<Region<T>> action) {
+        AtomicInteger remaining = new AtomicInteger(regions.size());
+        Thread thread = Thread.currentThread();
+
+        waitingThread = thread;
+        executing = true;
+
+        try {
+            for (Region<T> region : regions) {
+                Workers.EXECUTOR.execute(() -> {
+                    CURRENT_REGION.set(region);
+
+                    long start = System.nanoTime();
+
+                    try {
+                        action.accept(region);
+                    } finally {
+                        region.nanos = System.nanoTime() - start;
+
+                        CURRENT_REGION.remove();
+
+                        remaining.decrementAndGet();
+                        LockSupport.unpark(thread);
+                    }
+                });
+            }
+
+            while (remaining.get() > 0) {
+                Runnable task = MAIN_THREAD_TASKS.poll();
+
+                if (task != null) {
+                    task.run();
+                } else {
+                    LockSupport.parkNanos(RegionTickExecutor.class, 100_000L);
+                }
+            }
+        } finally {
+            executing = false;
+            waitingThread = null;
+        }
+
+        // Nothing waits on tasks submitted after the last worker finished, but they still have to run
+        Runnable task;
+
+        while ((task = MAIN_THREAD_TASKS.poll()) != null) {
+            task.run();
+        }
+
+        for (Region<T> region : regions) {
+            runDeferred(region.deferred);
+            applyStaged(region.staged);
+        }
+
+        applyStaged(MAIN_THREAD_STAGED);
+    }
+
+    private static void runDeferred(List<Runnable> deferred) {
+        for (Runnable call : deferred) {
+            call.run();
+        }
+
+        deferred.clear();
+    }
+
+    private static void applyStaged(List<StagedTick> staged) {
+        for (StagedTick tick : staged) {
+            tick.scheduler.addStagedTick(tick.pos, tick.type, tick.time, tick.priority);
+        }
+
+        staged.clear();
+    }
+
+    private static void submitMainThreadTask(Runnable task) {
+        MAIN_THREAD_TASKS.add(task);
+
+        Thread thread = waitingThread;
+
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private static Set<ResourceLocation> parseTypes(String value) {
+        Set<ResourceLocation> types = new HashSet<>();
+
+        for (String id : value.split(",")) {
+            id = id.trim();
+
+            if (id.isEmpty()) {
+                continue;
+            }
+
+            try {
+                types.add(new ResourceLocation(id));
+            } catch (ResourceLocationException e) {
+                LOGGER.warn("Ignoring invalid tick type '{}' in lithium.parallel_tick_types", id);
+            }
+        }
+
+        return types;
+    }
+
+    /**
+     * The ticks selected for execution in one region during a single game tick.
+     */
+    public static final class Region<T> {
+        public final int x, z;
+        public final List<TickEntry<T>> ticks = new ArrayList<>();
+
+        // True until a tick is found which can not be executed off-thread
+        public boolean parallel = true;
+
+        // The time the region took to execute, in nanoseconds
+        public long nanos;
+
+        // The execution time of each tick, only recorded if tick metrics are enabled
+        public long[] tickNanos;
+
+        // The tick which threw, and what it threw, if the region could not finish
+        public TickEntry<T> failedTick;
+        public Throwable failure;
+
+        private final List<StagedTick> staged = new ArrayList<>();
+        private final List<Runnable> deferred = new ArrayList<>();
+
+        public Region(int x, int z) {
+            this.x = x;
+            this.z = z;
+        }
+
+        /**
+         * Returns whether the tick at the given position could touch blocks of another region.
+         */
+        public static boolean isNearBorder(BlockPos pos) {
+            int x = pos.getX() & (REGION_SIZE - 1);
+            int z = pos.getZ() & (REGION_SIZE - 1);
+
+            return x < REGION_MARGIN || x >= REGION_SIZE - REGION_MARGIN || z < REGION_MARGIN || z >= REGION_SIZE - REGION_MARGIN;
+        }
+
+        public static long getKey(BlockPos pos) {
+            return ((long) (pos.getX() >> REGION_SHIFT) & 0xffffffffL) | ((long) (pos.getZ() >> REGION_SHIFT) << 32);
+        }
+    }
+
+    private static final class StagedTick {
+        final LithiumServerTickScheduler<?> scheduler;
+        final BlockPos pos;
+        final Object type;
+        final long time;
+        final TickPriority priority;
+
+        StagedTick(LithiumServerTickScheduler<?> scheduler, BlockPos pos, Object type, long time, TickPriority priority) {
+            this.scheduler = scheduler;
+            this.pos = pos;
+            this.type = type;
+            this.time = time;
+            this.priority = priority;
+        }
+    }
+
+    private static final class WorkerThread extends Thread {
+        WorkerThread(Runnable run, String name) {
+            super(run, name);
+        }
+    }
+
+    private static final class Workers {
+        private static final AtomicInteger THREAD_ID = new AtomicInteger();
+
+        // Sized by lithium.parallel_tick_threads, its daemon threads stay idle between the executions of regions
+        static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(GribCoreConfig.LITHIUM_PARALLEL_TICK_THREADS, run -> {
+            Thread thread = new WorkerThread(run, "Lithium Tick Worker #" + THREAD_ID.getAndIncrement());
+            thread.setDaemon(true);
+            thread.setUncaughtExceptionHandler((t, thr) -> LOGGER.error("Uncaught exception in thread " + t.getName(), thr));
+
+            return thread;
+        });
+    }
+}
@@ -0,0 +1,74 @@
+package gribland.gribcore.lithium.common.world.scheduler;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.level.TickPriority;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Collects ticks scheduled from threads other than the server thread, so they can be added to the scheduler by the
+ * server thread later. Any number of threads can push without locking, while only the server thread drains.
+ *
+ * The order in which other threads push is arbitrary, so drained ticks are sorted by their trigger time, priority,
+ * position and type id instead. This keeps the order in which staged ticks enter the scheduler the same between runs.
+ */
+public class StagedTickBuffer<T> {
+    // The most recently pushed tick, linking to the ones pushed before it
+    private final AtomicReference<Node<T>> head = new AtomicReference<>();
+
+    public void push(BlockPos pos, T type, long time, TickPriority priority) {
+        Node<T> node = new Node<>(pos.immutable(), type, time, priority);
+        Node<T> prev;
+
+        do {
+            prev = this.head.get();
+            node.next = prev;
+        } while (!this.head.compareAndSet(prev, node));
+    }
+
+    public boolean isEmpty() {
+        return this.head.get() == null;
+    }
+
+    /**
+     * Removes every staged tick and returns them in a deterministic order.
+     */
+    public List<Node<T>> drain(Function<T, ResourceLocation> idToName) {
+        Node<T> node = this.head.getAndSet(null);
+        List<Node<T>> ret = new ArrayList<>();
+
+        for (; node != null; node = node.next) {
+            ret.add(node);
+        }
+
+        if (ret.size() > 1) {
+            ret.sort(Comparator.<Node<T>>comparingLong(tick -> tick.time)
+                    .thenComparingInt(tick -> tick.priority.ordinal())
+                    .thenComparingLong(tick -> tick.pos.asLong())
+                    .thenComparing(tick -> idToName.apply(tick.type)));
+        }
+
+        return ret;
+    }
+
+    public static class Node<T> {
+        public final BlockPos pos;
+        public final T type;
+        public final long time;
+        public final TickPriority priority;
+
+        private Node<T> next;
+
+        Node(BlockPos pos, T type, long time, TickPriority priority) {
+            this.pos = pos;
+            this.type = type;
+            this.time = time;
+            this.priority = priority;
+        }
+    }
+}
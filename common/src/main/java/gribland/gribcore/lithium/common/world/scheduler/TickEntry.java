@@ -1,8 +1,8 @@
 package gribland.gribcore.lithium.common.world.scheduler;
 
+import net.minecraft.core.BlockPos;
 import net.minecraft.world.level.TickNextTickData;
-
-import java.util.Set;
+import net.minecraft.world.level.TickPriority;
 
 /**
  * A wrapper type for {@link ScheduledTick} which adds fields to mark the state of the tick in the scheduler's pipeline.
@@ -32,10 +32,19 @@ public class TickEntry<T> extends TickNextTickData<T> {
     /**
      * A pointer to the chunk index belonging to this scheduled tick.
      */
-    public final Set<TickEntry<T>> chunkIdx;
+    public final ChunkTickIndex<T> chunkIdx;
+
+    /**
+     * The next tick of a different type at the same position, as the scheduler indexes ticks by their position only.
+     */
+    public TickEntry<T> nextAtPos;
+
+    public TickEntry(TickNextTickData<T> tick, ChunkTickIndex<T> chunkIdx) {
+        this(tick.pos, tick.getType(), tick.triggerTick, tick.priority, chunkIdx);
+    }
 
-    public TickEntry(TickNextTickData<T> tick, Set<TickEntry<T>> chunkIdx) {
-        super(tick.pos, tick.getType(), tick.triggerTick, tick.priority);
+    public TickEntry(BlockPos pos, T type, long triggerTick, TickPriority priority, ChunkTickIndex<T> chunkIdx) {
+        super(pos, type, triggerTick, priority);
 
         this.chunkIdx = chunkIdx;
         this.chunkIdx.add(this);
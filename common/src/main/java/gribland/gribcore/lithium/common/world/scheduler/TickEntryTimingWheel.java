@@ -0,0 +1,183 @@
+package gribland.gribcore.lithium.common.world.scheduler;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectAVLTreeMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectSortedMap;
+import it.unimi.dsi.fastutil.objects.ObjectBidirectionalIterator;
+import net.minecraft.world.level.TickPriority;
+
+import java.util.function.Predicate;
+
+/**
+ * Orders scheduled ticks by their bucket key {@code (time << 4) | priority}, like a sorted map of the keys would, but
+ * without walking or allocating tree nodes for the common case of short delays.
+ *
+ * The next {@link #WHEEL_SIZE} game ticks starting at the cursor are kept in a ring of slots, with one queue per
+ * priority in each slot. Ticks scheduled further ahead go into an overflow tree and are moved into the ring once the
+ * cursor gets close enough. Queues which still hold ticks after the cursor passed them (because of the tick limit or
+ * because their chunk is not ticking) are kept in a second tree of overdue queues, which is visited first on every
+ * selection, just as the oldest keys of a sorted map would be.
+ */
+public class TickEntryTimingWheel<T> {
+    /**
+     * The number of game ticks covered by the ring. Must be a power of two.
+     */
+    public static final int WHEEL_SIZE = 256;
+
+    private static final int PRIORITIES = TickPriority.values().length;
+
+    // index = (time & (WHEEL_SIZE - 1)) * PRIORITIES + priority
+    private final TickEntryQueue<T>[] wheel;
+
+    // Buckets before the cursor which still hold ticks
+    private final Long2ObjectSortedMap<TickEntryQueue<T>> overdue = new Long2ObjectAVLTreeMap<>();
+
+    // Buckets at or after cursor + WHEEL_SIZE
+    private final Long2ObjectSortedMap<TickEntryQueue<T>> future = new Long2ObjectAVLTreeMap<>();
+
+    // The first game tick which has not been passed by a selection yet
+    private long cursor;
+
+    @SuppressWarnings("unchecked")
+    public TickEntryTimingWheel(long time) {
+        this.wheel = (TickEntryQueue<T>[]) new TickEntryQueue[WHEEL_SIZE * PRIORITIES];
+        this.cursor = time;
+    }
+
+    /**
+     * Adds the tick to the end of the bucket for the given key.
+     */
+    public void push(long key, TickEntry<T> tick) {
+        long time = key >> 4;
+
+        if (time < this.cursor) {
+            this.overdue.computeIfAbsent(key, k -> new TickEntryQueue<>()).push(tick);
+        } else if (time < this.cursor + WHEEL_SIZE) {
+            int index = getWheelIndex(time, (int) (key & 15));
+            TickEntryQueue<T> queue = this.wheel[index];
+
+            if (queue == null) {
+                this.wheel[index] = queue = new TickEntryQueue<>();
+            }
+
+            queue.push(tick);
+        } else {
+            this.future.computeIfAbsent(key, k -> new TickEntryQueue<>()).push(tick);
+        }
+    }
+
+    /**
+     * Visits every non-empty bucket with a time at or before the given time in key order, until the visitor returns
+     * false. The visitor may remove ticks from the queue it is given. Buckets left non-empty are kept in order and will
+     * be visited again by the next selection.
+     */
+    public void select(long time, Predicate<TickEntryQueue<T>> visitor) {
+        boolean visiting = this.selectOverdue(time, visitor);
+
+        if (time < this.cursor) {
+            return;
+        }
+
+        // Every slot of the ring is due if we are a full revolution behind, after which the due part of the overflow
+        // tree follows directly
+        long wheelEnd = Math.min(time, this.cursor + WHEEL_SIZE - 1);
+
+        for (long t = this.cursor; t <= wheelEnd; t++) {
+            for (int priority = 0; priority < PRIORITIES; priority++) {
+                int index = getWheelIndex(t, priority);
+                TickEntryQueue<T> queue = this.wheel[index];
+
+                if (queue == null || queue.isEmpty()) {
+                    continue;
+                }
+
+                if (visiting) {
+                    visiting = visitor.test(queue);
+                }
+
+                // The cursor is about to pass this slot, so anything left over becomes overdue
+                if (!queue.isEmpty()) {
+                    this.overdue.put(getBucketKey(t, priority), queue);
+                    this.wheel[index] = null;
+                }
+            }
+        }
+
+        if (time >= this.cursor + WHEEL_SIZE) {
+            while (!this.future.isEmpty()) {
+                long key = this.future.firstLongKey();
+
+                if ((key >> 4) > time) {
+                    break;
+                }
+
+                TickEntryQueue<T> queue = this.future.remove(key);
+
+                if (visiting) {
+                    visiting = visitor.test(queue);
+                }
+
+                if (!queue.isEmpty()) {
+                    this.overdue.put(key, queue);
+                }
+            }
+        }
+
+        this.cursor = time + 1;
+
+        this.refill();
+    }
+
+    private boolean selectOverdue(long time, Predicate<TickEntryQueue<T>> visitor) {
+        if (this.overdue.isEmpty()) {
+            return true;
+        }
+
+        // Calculates the maximum key value which includes all ticks scheduled before the specified time
+        long headKey = getBucketKey(time + 1, 0) - 1;
+
+        ObjectBidirectionalIterator<TickEntryQueue<T>> it = this.overdue.headMap(headKey).values().iterator();
+
+        while (it.hasNext()) {
+            TickEntryQueue<T> queue = it.next();
+
+            boolean visiting = visitor.test(queue);
+
+            if (queue.isEmpty()) {
+                it.remove();
+            }
+
+            if (!visiting) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    // Moves the buckets of the overflow tree which are now covered by the ring into it
+    private void refill() {
+        long wheelEnd = this.cursor + WHEEL_SIZE;
+
+        while (!this.future.isEmpty()) {
+            long key = this.future.firstLongKey();
+            long time = key >> 4;
+
+            if (time >= wheelEnd) {
+                break;
+            }
+
+            TickEntryQueue<T> queue = this.future.remove(key);
+
+            // The slot was emptied when the cursor last passed it
+            this.wheel[getWheelIndex(time, (int) (key & 15))] = queue;
+        }
+    }
+
+    private static int getWheelIndex(long time, int priority) {
+        return ((int) time & (WHEEL_SIZE - 1)) * PRIORITIES + priority;
+    }
+
+    private static long getBucketKey(long time, int priority) {
+        return (time << 4L) | (priority & 15);
+    }
+}
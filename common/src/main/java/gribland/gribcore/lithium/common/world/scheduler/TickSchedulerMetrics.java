@@ -0,0 +1,163 @@
+package gribland.gribcore.lithium.common.world.scheduler;
+
+import gribland.gribcore.config.GribCoreConfig;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectMap;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.level.ChunkPos;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * Opt-in counters and execution costs of a single {@link LithiumServerTickScheduler}. The scheduler only creates this
+ * if {@link #ENABLED} is set, and checks the flag before every recording call, which costs a branch on a constant the
+ * JIT can fold. Only the server thread records into and reads from this.
+ */
+public class TickSchedulerMetrics<T> {
+    public static final boolean ENABLED = GribCoreConfig.LITHIUM_TICK_METRICS;
+
+    /**
+     * The upper bounds (inclusive) of the delay buckets shown for the backlog, in game ticks. Ticks which are already
+     * due have a delay of 0 or less.
+     */
+    private static final int[] DELAY_BOUNDS = { 0, 1, 4, 16, 64, 256 };
+
+    private long scheduled;
+    private long executed;
+    private long deferred;
+    private long limitHits;
+    private long executedNanos;
+
+    private final Reference2ObjectOpenHashMap<T, Cost> costByType = new Reference2ObjectOpenHashMap<>();
+    private final Long2ObjectOpenHashMap<Cost> costByChunk = new Long2ObjectOpenHashMap<>();
+
+    public void recordScheduled() {
+        this.scheduled++;
+    }
+
+    /**
+     * Records a tick which was due, but left in its queue because the tick limit was reached.
+     */
+    public void recordDeferred() {
+        this.deferred++;
+    }
+
+    /**
+     * Records a game tick in which the selection of ticks stopped at the tick limit.
+     */
+    public void recordLimitHit() {
+        this.limitHits++;
+    }
+
+    public void recordExecuted(TickEntry<T> tick, long nanos) {
+        this.executed++;
+        this.executedNanos += nanos;
+
+        Cost type = this.costByType.get(tick.getType());
+
+        if (type == null) {
+            this.costByType.put(tick.getType(), type = new Cost());
+        }
+
+        type.add(nanos);
+
+        long chunkKey = ChunkPos.asLong(tick.pos.getX() >> 4, tick.pos.getZ() >> 4);
+        Cost chunk = this.costByChunk.get(chunkKey);
+
+        if (chunk == null) {
+            this.costByChunk.put(chunkKey, chunk = new Cost());
+        }
+
+        chunk.add(nanos);
+    }
+
+    public void reset() {
+        this.scheduled = 0L;
+        this.executed = 0L;
+        this.deferred = 0L;
+        this.limitHits = 0L;
+        this.executedNanos = 0L;
+
+        this.costByType.clear();
+        this.costByChunk.clear();
+    }
+
+    /**
+     * Returns a human readable summary of everything recorded since the last reset, with the given number of the most
+     * expensive chunks and types.
+     *
+     * @param delays The delays of the currently scheduled ticks, relative to the current game tick
+     */
+    public List<String> report(long[] delays, Function<T, ResourceLocation> idToName, int top) {
+        List<String> ret = new ArrayList<>();
+
+        ret.add(String.format(Locale.ROOT, "scheduled=%d executed=%d deferred=%d limit hits=%d execution time=%.1fms",
+                this.scheduled, this.executed, this.deferred, this.limitHits, this.executedNanos / 1.0E6));
+
+        int[] backlog = new int[DELAY_BOUNDS.length + 1];
+
+        for (long delay : delays) {
+            int bucket = 0;
+
+            while (bucket < DELAY_BOUNDS.length && delay > DELAY_BOUNDS[bucket]) {
+                bucket++;
+            }
+
+            backlog[bucket]++;
+        }
+
+        StringBuilder line = new StringBuilder("backlog by delay: due=").append(backlog[0]);
+
+        for (int i = 1; i < DELAY_BOUNDS.length; i++) {
+            line.append(" <=").append(DELAY_BOUNDS[i]).append('=').append(backlog[i]);
+        }
+
+        line.append(" >").append(DELAY_BOUNDS[DELAY_BOUNDS.length - 1]).append('=').append(backlog[DELAY_BOUNDS.length]);
+
+        ret.add(line.toString());
+
+        List<Reference2ObjectMap.Entry<T, Cost>> types = new ArrayList<>(this.costByType.reference2ObjectEntrySet());
+        types.sort(Comparator.comparingLong((Reference2ObjectMap.Entry<T, Cost> entry) -> entry.getValue().nanos).reversed());
+
+        for (int i = 0; i < Math.min(top, types.size()); i++) {
+            Reference2ObjectMap.Entry<T, Cost> entry = types.get(i);
+
+            ret.add("  type " + idToName.apply(entry.getKey()) + ": " + entry.getValue());
+        }
+
+        List<Long2ObjectMap.Entry<Cost>> chunks = new ArrayList<>(this.costByChunk.long2ObjectEntrySet());
+        chunks.sort(Comparator.comparingLong((Long2ObjectMap.Entry<Cost> entry) -> entry.getValue().nanos).reversed());
+
+        for (int i = 0; i < Math.min(top, chunks.size()); i++) {
+            Long2ObjectMap.Entry<Cost> entry = chunks.get(i);
+            long chunk = entry.getLongKey();
+
+            ret.add(String.format(Locale.ROOT, "  chunk [%d, %d] (block %d, %d): %s", ChunkPos.getX(chunk), ChunkPos.getZ(chunk),
+                    ChunkPos.getX(chunk) << 4, ChunkPos.getZ(chunk) << 4, entry.getValue()));
+        }
+
+        return ret;
+    }
+
+    private static class Cost {
+        long count;
+        long nanos;
+
+        void add(long nanos) {
+            this.count++;
+            this.nanos += nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%d ticks, %.3fms total, %.1fus mean", this.count, this.nanos / 1.0E6,
+                    this.nanos / 1.0E3 / Math.max(1L, this.count));
+        }
+    }
+}
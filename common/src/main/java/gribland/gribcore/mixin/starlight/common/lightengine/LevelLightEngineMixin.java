@@ -75,7 +75,7 @@ public abstract class LevelLightEngineMixin implements LightEventListener, StarL
      */
     @Overwrite
     public void checkBlock(final BlockPos pos) {
-        this.lightEngine.blockChange(pos.immutable());
+        this.lightEngine.blockChange(pos.asLong());
     }
 
     /**
@@ -49,35 +49,72 @@ public abstract class ThreadedLevelLightEngineMixin extends LevelLightEngine imp
     @Unique
     private final Long2IntOpenHashMap chunksBeingWorkedOn = new Long2IntOpenHashMap();
 
+    // How a task for a section is handled, see getTaskMode
     @Unique
-    private void queueTaskForSection(final int chunkX, final int chunkY, final int chunkZ, final Supplier<CompletableFuture<Void>> runnable) {
+    private static final int TASK_DISCARD = 0;
+    @Unique
+    private static final int TASK_RUN = 1;
+    @Unique
+    private static final int TASK_RESCHEDULE = 2;
+    @Unique
+    private static final int TASK_RUN_TRACKED = 3;
+
+    @Unique
+    private int getTaskMode(final int chunkX, final int chunkZ) {
         final ServerLevel world = (ServerLevel)this.getLightEngine().getWorld();
 
         final ChunkAccess center = this.getLightEngine().getAnyChunkNow(chunkX, chunkZ);
         if (center == null || !center.getStatus().isOrAfter(ChunkStatus.LIGHT)) {
             // do not accept updates in unlit chunks, unless we might be generating a chunk. thanks to the amazing
             // chunk scheduling, we could be lighting and generating a chunk at the same time
-            return;
+            return TASK_DISCARD;
         }
 
         if (center.getStatus() != ChunkStatus.FULL) {
             // do not keep chunk loaded, we are probably in a gen thread
             // if we proceed to add a ticket the chunk will be loaded, which is not what we want (avoid cascading gen)
-            runnable.get();
-            return;
+            return TASK_RUN;
         }
 
         if (!world.getChunkSource().chunkMap.mainThreadExecutor.isSameThread()) {
             // ticket logic is not safe to run off-main, re-schedule
-            world.getChunkSource().chunkMap.mainThreadExecutor.execute(() -> {
-                this.queueTaskForSection(chunkX, chunkY, chunkZ, runnable);
-            });
-            return;
+            return TASK_RESCHEDULE;
         }
 
-        final long key = CoordinateUtils.getChunkKey(chunkX, chunkZ);
+        return TASK_RUN_TRACKED;
+    }
+
+    @Unique
+    private void queueTaskForSection(final int chunkX, final int chunkY, final int chunkZ, final Supplier<CompletableFuture<Void>> runnable) {
+        final int mode = this.getTaskMode(chunkX, chunkZ);
+        switch (mode) {
+            case TASK_DISCARD:
+                return;
+            case TASK_RUN:
+                runnable.get();
+                return;
+            case TASK_RESCHEDULE:
+                ((ServerLevel)this.getLightEngine().getWorld()).getChunkSource().chunkMap.mainThreadExecutor.execute(() -> {
+                    this.queueTaskForSection(chunkX, chunkY, chunkZ, runnable);
+                });
+                return;
+            case TASK_RUN_TRACKED:
+                this.trackTaskForSection(chunkX, chunkZ, runnable.get());
+                return;
+            default:
+                throw new IllegalStateException("Unknown task mode: " + mode);
+        }
+    }
 
-        final CompletableFuture<Void> updateFuture = runnable.get();
+    /**
+     * Keeps the chunk loaded and its neighbours from saving until the given update completes. Must be called on the main
+     * thread.
+     */
+    @Unique
+    private void trackTaskForSection(final int chunkX, final int chunkZ, final CompletableFuture<Void> updateFuture) {
+        final ServerLevel world = (ServerLevel)this.getLightEngine().getWorld();
+
+        final long key = CoordinateUtils.getChunkKey(chunkX, chunkZ);
 
         if (updateFuture == null) {
             // not scheduled
@@ -127,10 +164,29 @@ public abstract class ThreadedLevelLightEngineMixin extends LevelLightEngine imp
      */
     @Overwrite
     public void checkBlock(final BlockPos pos) {
-        final BlockPos posCopy = pos.immutable();
-        this.queueTaskForSection(posCopy.getX() >> 4, posCopy.getY() >> 4, posCopy.getZ() >> 4, () -> {
-            return this.getLightEngine().blockChange(posCopy);
-        });
+        // the position is passed on packed, so queueing the change neither copies it nor needs a task capturing it
+        final long packedPos = pos.asLong();
+        final int chunkX = pos.getX() >> 4;
+        final int chunkZ = pos.getZ() >> 4;
+
+        final int mode = this.getTaskMode(chunkX, chunkZ);
+        switch (mode) {
+            case TASK_DISCARD:
+                return;
+            case TASK_RUN:
+                this.getLightEngine().blockChange(packedPos);
+                return;
+            case TASK_RESCHEDULE:
+                ((ServerLevel)this.getLightEngine().getWorld()).getChunkSource().chunkMap.mainThreadExecutor.execute(() -> {
+                    this.checkBlock(BlockPos.of(packedPos));
+                });
+                return;
+            case TASK_RUN_TRACKED:
+                this.trackTaskForSection(chunkX, chunkZ, this.getLightEngine().blockChange(packedPos));
+                return;
+            default:
+                throw new IllegalStateException("Unknown task mode: " + mode);
+        }
     }
 
     /**
@@ -207,6 +263,10 @@ public abstract class ThreadedLevelLightEngineMixin extends LevelLightEngine imp
             this.chunkMap.releaseLightTicket(chunkPos);
             return chunk;
         }, (runnable) -> {
+            // generated chunks may be lit on the chunk lighting workers, loaded chunks still need the light queue
+            if (!lit && this.getLightEngine().scheduleChunkLightParallel(chunkPos, runnable)) {
+                return;
+            }
             this.getLightEngine().scheduleChunkLight(chunkPos, runnable);
             this.tryScheduleUpdate();
         }).whenComplete((final ChunkAccess c, final Throwable throwable) -> {
@@ -1,6 +1,7 @@
 package gribland.gribcore.mixin.starlight.common.world;
 
 import com.mojang.datafixers.util.Either;
+import gribland.gribcore.starlight.light.StarLightLightingProvider;
 import gribland.gribcore.starlight.util.CoordinateUtils;
 import gribland.gribcore.starlight.world.ExtendedWorld;
 import net.minecraft.resources.ResourceKey;
@@ -19,6 +20,10 @@ import net.minecraft.world.level.storage.WritableLevelData;
 import org.spongepowered.asm.mixin.Final;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+import java.util.function.BooleanSupplier;
 import java.util.function.Supplier;
 
 @Mixin(ServerLevel.class)
@@ -55,4 +60,27 @@ public abstract class ServerWorldMixin extends Level implements WorldGenLevel, E
 
         return holder == null ? null : holder.getLastAvailable();
     }
+
+    /**
+     * Hands the light storage of unloaded chunks back to the nibble pool, if pooled storage is enabled.
+     * The chunk has already been saved at this point.
+     */
+    @Inject(
+            method = "unload",
+            at = @At("HEAD")
+    )
+    private void releaseLightStorageHook(final LevelChunk chunk, final CallbackInfo ci) {
+        ((StarLightLightingProvider)this.chunkSource.getLightEngine()).getLightEngine().releaseChunkStorage(chunk);
+    }
+
+    /**
+     * Drives the relight jobs of this world.
+     */
+    @Inject(
+            method = "tick",
+            at = @At("TAIL")
+    )
+    private void tickRelightJobsHook(final BooleanSupplier hasTimeLeft, final CallbackInfo ci) {
+        ((StarLightLightingProvider)this.chunkSource.getLightEngine()).getLightEngine().tickRelightJobs();
+    }
 }
@@ -2,6 +2,9 @@ package gribland.gribcore.starlight.light;
 
 import gribland.gribcore.starlight.blockstate.ExtendedAbstractBlockState;
 import gribland.gribcore.starlight.chunk.ExtendedChunk;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongSet;
 import net.minecraft.core.BlockPos;
 import net.minecraft.world.level.Level;
 import net.minecraft.world.level.block.state.BlockState;
@@ -12,13 +15,9 @@ import net.minecraft.world.level.chunk.LevelChunk;
 import net.minecraft.world.level.chunk.LevelChunkSection;
 import net.minecraft.world.level.chunk.LightChunkGetter;
 import net.minecraft.world.level.chunk.PalettedContainer;
+import net.minecraft.world.level.chunk.ProtoChunk;
 import net.minecraft.world.phys.shapes.Shapes;
 import net.minecraft.world.phys.shapes.VoxelShape;
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
-import java.util.Set;
-import java.util.stream.Collectors;
 
 @SuppressWarnings("ALL")
 public final class BlockStarLightEngine extends StarLightEngine {
@@ -198,19 +197,29 @@ public final class BlockStarLightEngine extends StarLightEngine {
     }
 
     @Override
-    protected void propagateBlockChanges(final LightChunkGetter lightAccess, final ChunkAccess atChunk, final Set<BlockPos> positions) {
-        for (final BlockPos pos : positions) {
-            this.checkBlock(lightAccess, pos.getX(), pos.getY(), pos.getZ());
+    protected void propagateBlockChanges(final LightChunkGetter lightAccess, final ChunkAccess atChunk, final LongSet positions) {
+        for (final LongIterator iterator = positions.iterator(); iterator.hasNext();) {
+            final long pos = iterator.nextLong();
+            this.checkBlock(lightAccess, BlockPos.getX(pos), BlockPos.getY(pos), BlockPos.getZ(pos));
         }
 
         this.performLightDecrease(lightAccess);
     }
-    protected Iterator<BlockPos> getSources(final LightChunkGetter lightAccess, final ChunkAccess chunk) {
+    // reused between calls, engines are never used by two threads at once
+    protected final LongArrayList sources = new LongArrayList();
+
+    protected static boolean isSource(final BlockState state) {
+        return state.getLightEmission() > 0;
+    }
+
+    // rets the positions of the light sources in the chunk, packed with BlockPos#asLong. The list is reused by the next call
+    protected LongArrayList getSources(final LightChunkGetter lightAccess, final ChunkAccess chunk) {
+        final LongArrayList sources = this.sources;
+        sources.clear();
+
         if (chunk instanceof ImposterProtoChunk || chunk instanceof LevelChunk) {
             // implementation on Chunk is pretty awful, so write our own here. The big optimisation is
-            // skipping empty sections, and the far more optimised reading of types.
-            List<BlockPos> sources = new ArrayList<>();
-
+            // skipping sections without sources, and the far more optimised reading of types.
             int offX = chunk.getPos().x << 4;
             int offZ = chunk.getPos().z << 4;
 
@@ -222,59 +231,59 @@ public final class BlockStarLightEngine extends StarLightEngine {
                     continue;
                 }
                 final PalettedContainer<BlockState> states = section.states;
+                if (!states.maybeHas(BlockStarLightEngine::isSource)) {
+                    // no state in the palette emits light, this is most sections
+                    // note: with the global palette this is always true
+                    continue;
+                }
                 final int offY = sectionY << 4;
 
                 for (int index = 0; index < (16 * 16 * 16); ++index) {
                     final BlockState state = states.get(index);
-                    if (((ExtendedAbstractBlockState)state).getOpacityIfCached() == -1) {
-                        // Forge
-                        this.mutablePos1.set(offX | (index & 15), offY | (index >>> 8), offZ | ((index >>> 4) & 15));
-                        if (state.getLightEmission() <= 0) {
-                            continue;
-                        }
-                    } else {
-                        if (state.getLightEmission() <= 0) {
-                            continue;
-                        }
+                    if (state.getLightEmission() <= 0) {
+                        continue;
                     }
 
                     // index = x | (z << 4) | (y << 8)
-                    sources.add(new BlockPos(offX | (index & 15), offY | (index >>> 8), offZ | ((index >>> 4) & 15)));
+                    sources.add(BlockPos.asLong(offX | (index & 15), offY | (index >>> 8), offZ | ((index >>> 4) & 15)));
                 }
             }
-
-            return sources.iterator();
         } else {
             // world gen and lighting run in parallel, and if lighting keeps up it can be lighting chunks that are
-            // being generated. In the nether, lava will add a lot of sources. This resulted in quite a few CME crashes.
-            // So all we do spinloop until we can collect a list of sources, and even if it is out of date we will pick up
-            // the missing sources from checkBlock.
-            for (;;) {
-                try {
-                    return chunk.getLights().collect(Collectors.toList()).iterator();
-                } catch (final Exception cme) {
-                    continue;
+            // being generated. In the nether, lava will add a lot of sources. Iterating the proto chunk's light list
+            // while it is appended to used to throw CMEs, so copy it instead: toArray cannot throw while racing an add,
+            // at worst the copy misses the newest sources or contains nulls. Missing sources are picked up from checkBlock.
+            final Object[] lights = ((ProtoChunk)chunk).lights.toArray();
+            for (final Object light : lights) {
+                if (light != null) {
+                    sources.add(((BlockPos)light).asLong());
                 }
             }
         }
+
+        return sources;
     }
 
     @Override
     public void lightChunk(final LightChunkGetter lightAccess, final ChunkAccess chunk, final boolean needsEdgeChecks) {
         // setup sources
         final int emittedMask = this.emittedLightMask;
-        for (final Iterator<BlockPos> positions = this.getSources(lightAccess, chunk); positions.hasNext();) {
-            final BlockPos pos = positions.next();
-            final BlockState blockState = this.getBlockState(pos.getX(), pos.getY(), pos.getZ());
+        final LongArrayList sources = this.getSources(lightAccess, chunk);
+        for (int i = 0, len = sources.size(); i < len; ++i) {
+            final long pos = sources.getLong(i);
+            final int posX = BlockPos.getX(pos);
+            final int posY = BlockPos.getY(pos);
+            final int posZ = BlockPos.getZ(pos);
+            final BlockState blockState = this.getBlockState(posX, posY, posZ);
             final int emittedLight = blockState.getLightEmission() & emittedMask; // Forge
 
-            if (emittedLight <= this.getLightLevel(pos.getX(), pos.getY(), pos.getZ())) {
+            if (emittedLight <= this.getLightLevel(posX, posY, posZ)) {
                 // some other source is brighter
                 continue;
             }
 
             this.appendToIncreaseQueue(
-                    ((pos.getX() + (pos.getZ() << 6) + (pos.getY() << (6 + 6)) + this.coordinateOffset) & ((1L << (6 + 6 + 16)) - 1))
+                    ((posX + (posZ << 6) + (posY << (6 + 6)) + this.coordinateOffset) & ((1L << (6 + 6 + 16)) - 1))
                             | (emittedLight & 0xFL) << (6 + 6 + 16)
                             | (((long)ALL_DIRECTIONS_BITSET) << (6 + 6 + 16 + 4))
                             | (((ExtendedAbstractBlockState)blockState).isConditionallyFullOpaque() ? FLAG_HAS_SIDED_TRANSPARENT_BLOCKS : 0)
@@ -282,8 +291,9 @@ public final class BlockStarLightEngine extends StarLightEngine {
 
 
             // propagation wont set this for us
-            this.setLightLevel(pos.getX(), pos.getY(), pos.getZ(), emittedLight);
+            this.setLightLevel(posX, posY, posZ, emittedLight);
         }
+        sources.clear();
 
         if (needsEdgeChecks) {
             // not required to propagate here, but this will reduce the hit of the edge checks
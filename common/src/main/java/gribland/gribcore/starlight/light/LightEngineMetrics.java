@@ -0,0 +1,240 @@
+package gribland.gribcore.starlight.light;
+
+import gribland.gribcore.config.GribCoreConfig;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Opt-in timings and queue statistics for the light engine, shared by every world. When disabled, every recording call
+ * site is guarded by {@link #ENABLED} and compiles away.
+ * <p>
+ * A decrease is timed up to the increase it runs afterwards, while edge checks and empty section changes are timed
+ * including the propagation they cause.
+ * </p>
+ */
+public final class LightEngineMetrics {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    public static final boolean ENABLED = GribCoreConfig.STARLIGHT_METRICS;
+
+    public enum Phase {
+        INCREASE("performLightIncrease"),
+        DECREASE("performLightDecrease"),
+        EDGE_CHECKS("edge checks"),
+        EMPTY_SECTION_CHANGES("handleEmptySectionChanges"),
+        PROPAGATE_CHANGES("propagateChanges");
+
+        public final String name;
+
+        Phase(final String name) {
+            this.name = name;
+        }
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+    private static final Histogram[] PHASE_TIMES = new Histogram[PHASES.length];
+    static {
+        for (int i = 0; i < PHASE_TIMES.length; ++i) {
+            PHASE_TIMES[i] = new Histogram();
+        }
+    }
+
+    private static final Histogram TASKS_DRAINED = new Histogram();
+    private static final AtomicInteger INCREASE_QUEUE_HIGH_WATER = new AtomicInteger();
+    private static final AtomicInteger DECREASE_QUEUE_HIGH_WATER = new AtomicInteger();
+    private static final AtomicInteger LIGHT_QUEUE_HIGH_WATER = new AtomicInteger();
+    private static final LongAdder CHUNK_LOOKUPS = new LongAdder();
+    private static final LongAdder CHUNK_LOOKUPS_REUSED = new LongAdder();
+
+    private LightEngineMetrics() {
+        throw new RuntimeException();
+    }
+
+    public static void recordPhase(final Phase phase, final long startNanos) {
+        PHASE_TIMES[phase.ordinal()].record(System.nanoTime() - startNanos);
+    }
+
+    public static void recordIncreaseQueue(final int length) {
+        updateMax(INCREASE_QUEUE_HIGH_WATER, length);
+    }
+
+    public static void recordDecreaseQueue(final int length) {
+        updateMax(DECREASE_QUEUE_HIGH_WATER, length);
+    }
+
+    public static void recordPropagateChanges(final long startNanos, final int queueDepth, final int tasksDrained) {
+        recordPhase(Phase.PROPAGATE_CHANGES, startNanos);
+        updateMax(LIGHT_QUEUE_HIGH_WATER, queueDepth);
+        TASKS_DRAINED.record(tasksDrained);
+    }
+
+    public static void recordChunkLookup(final boolean reused) {
+        (reused ? CHUNK_LOOKUPS_REUSED : CHUNK_LOOKUPS).increment();
+    }
+
+    private static void updateMax(final AtomicInteger max, final int value) {
+        int curr;
+        while (value > (curr = max.get())) {
+            if (max.compareAndSet(curr, value)) {
+                return;
+            }
+        }
+    }
+
+    public static void reset() {
+        for (final Histogram histogram : PHASE_TIMES) {
+            histogram.reset();
+        }
+        TASKS_DRAINED.reset();
+        INCREASE_QUEUE_HIGH_WATER.set(0);
+        DECREASE_QUEUE_HIGH_WATER.set(0);
+        LIGHT_QUEUE_HIGH_WATER.set(0);
+        CHUNK_LOOKUPS.reset();
+        CHUNK_LOOKUPS_REUSED.reset();
+    }
+
+    /**
+     * Returns a human readable summary of everything recorded since the last reset.
+     */
+    public static List<String> report() {
+        final List<String> ret = new ArrayList<>();
+        for (final Phase phase : PHASES) {
+            final Histogram histogram = PHASE_TIMES[phase.ordinal()];
+            ret.add(String.format(Locale.ROOT, "%s: count=%d mean=%.1fus p50<=%.1fus p99<=%.1fus max=%.1fus", phase.name,
+                    histogram.getCount(), histogram.getMean() / 1.0E3, histogram.getPercentileBound(0.5) / 1.0E3,
+                    histogram.getPercentileBound(0.99) / 1.0E3, histogram.getMax() / 1.0E3));
+        }
+        ret.add(String.format(Locale.ROOT, "tasks drained per propagateChanges: mean=%.1f p99<=%d max=%d",
+                TASKS_DRAINED.getMean(), TASKS_DRAINED.getPercentileBound(0.99), TASKS_DRAINED.getMax()));
+        ret.add(String.format(Locale.ROOT, "high water marks: increase queue=%d decrease queue=%d light queue=%d",
+                INCREASE_QUEUE_HIGH_WATER.get(), DECREASE_QUEUE_HIGH_WATER.get(), LIGHT_QUEUE_HIGH_WATER.get()));
+        ret.add(String.format(Locale.ROOT, "chunk lookups: resolved=%d reused=%d",
+                CHUNK_LOOKUPS.sum(), CHUNK_LOOKUPS_REUSED.sum()));
+        return ret;
+    }
+
+    // log2 buckets, so percentiles are only known up to the next power of two
+    static final class Histogram {
+
+        private final AtomicLongArray buckets = new AtomicLongArray(Long.SIZE + 1);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        void record(final long value) {
+            final long clamped = Math.max(0L, value);
+            this.buckets.incrementAndGet(Long.SIZE - Long.numberOfLeadingZeros(clamped));
+            this.count.increment();
+            this.sum.add(clamped);
+
+            long curr;
+            while (clamped > (curr = this.max.get())) {
+                if (this.max.compareAndSet(curr, clamped)) {
+                    break;
+                }
+            }
+        }
+
+        void reset() {
+            for (int i = 0; i < this.buckets.length(); ++i) {
+                this.buckets.set(i, 0L);
+            }
+            this.count.reset();
+            this.sum.reset();
+            this.max.set(0L);
+        }
+
+        long getCount() {
+            return this.count.sum();
+        }
+
+        long getMax() {
+            return this.max.get();
+        }
+
+        double getMean() {
+            final long count = this.count.sum();
+            return count == 0L ? 0.0 : (double)this.sum.sum() / (double)count;
+        }
+
+        long getPercentileBound(final double percentile) {
+            final long count = this.count.sum();
+            if (count == 0L) {
+                return 0L;
+            }
+            final long target = (long)Math.ceil(percentile * (double)count);
+            long seen = 0L;
+            for (int i = 0; i < this.buckets.length(); ++i) {
+                seen += this.buckets.get(i);
+                if (seen >= target) {
+                    return i == 0 ? 0L : (i >= Long.SIZE ? Long.MAX_VALUE : (1L << i) - 1L);
+                }
+            }
+            return this.max.get();
+        }
+    }
+
+    // holder, so the dump thread is created at most once
+    private static final class Dumper {
+
+        private static final File FILE = new File("./logs/starlight-metrics.log");
+
+        static {
+            final int interval = GribCoreConfig.STARLIGHT_METRICS_DUMP_INTERVAL;
+            if (ENABLED && interval > 0) {
+                final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor((final Runnable run) -> {
+                    final Thread thread = new Thread(run, "Starlight Metrics Dumper");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                executor.scheduleAtFixedRate(Dumper::dump, interval, interval, TimeUnit.SECONDS);
+            }
+        }
+
+        private static void dump() {
+            try {
+                final File dir = FILE.getParentFile();
+                if (!dir.exists() && !dir.mkdirs()) {
+                    throw new IOException("Could not create parent directories");
+                }
+                try (Writer writer = new FileWriter(FILE, true)) {
+                    writer.write("[" + new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.ROOT).format(new Date()) + "]\n");
+                    for (final String line : report()) {
+                        writer.write(line);
+                        writer.write('\n');
+                    }
+                }
+            } catch (final Throwable thr) {
+                LOGGER.warn("Failed to dump light engine metrics", thr);
+            }
+        }
+
+        static void init() {}
+    }
+
+    /**
+     * Starts the periodic dump to {@code logs/starlight-metrics.log}, if enabled. Safe to call multiple times.
+     */
+    public static void startDumping() {
+        if (ENABLED) {
+            Dumper.init();
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package gribland.gribcore.starlight.light;
+
+import gribland.gribcore.config.GribCoreConfig;
+import gribland.gribcore.starlight.util.CoordinateUtils;
+import gribland.gribcore.starlight.util.IntegerUtil;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Runs the initial lighting of generated chunks on a worker pool instead of the light thread, see
+ * {@link GribCoreConfig#STARLIGHT_PARALLEL_CHUNK_LIGHTING}.
+ * <p>
+ * Lighting a chunk reads chunks in a 2 radius and writes chunks in a 1 radius around it, so a chunk is only started once
+ * no chunk within {@link StarLightInterface#REGION_SEPARATION} of it is being lit. Chunks also never overtake an earlier
+ * submitted chunk within that distance, so neighbours are lit in the order they were generated in, just like on the
+ * light thread.
+ * </p>
+ * <p>
+ * Queued light propagation writes to the same light data, so it takes the world lock exclusively while lighting tasks
+ * share it. The lock is fair, so propagation is never starved by a stream of generated chunks.
+ * </p>
+ */
+public final class ParallelChunkLighter {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    // how many of the oldest waiting chunks are considered when starting the next one
+    private static final int SCAN_WINDOW = 64;
+
+    private final Executor executor;
+    private final int maxRunning;
+
+    private final ReentrantReadWriteLock worldLock = new ReentrantReadWriteLock(true);
+
+    // guarded by itself
+    private final ArrayDeque<Task> pending = new ArrayDeque<>();
+    private final long[] running;
+    private int runningCount;
+    // chunks skipped by the current startTasks scan, which must not be overtaken by their neighbours
+    private final long[] skipped = new long[SCAN_WINDOW];
+
+    private final LongAdder chunksLit = new LongAdder();
+    private final LongAdder lightingNanos = new LongAdder();
+
+    public ParallelChunkLighter() {
+        this(Workers.EXECUTOR, GribCoreConfig.STARLIGHT_CHUNK_LIGHTING_THREADS);
+    }
+
+    public ParallelChunkLighter(final Executor executor, final int maxRunning) {
+        this.executor = executor;
+        this.maxRunning = maxRunning;
+        this.running = new long[maxRunning];
+    }
+
+    /**
+     * Queues the lighting task of the chunk at the given coordinate, see {@link CoordinateUtils#getChunkKey(int, int)}.
+     */
+    public void submit(final long chunkCoordinate, final Runnable task) {
+        synchronized (this.pending) {
+            this.pending.add(new Task(chunkCoordinate, task));
+            this.startTasks();
+        }
+    }
+
+    /**
+     * Blocks until no chunk is being lit, and keeps any chunk from starting until {@link #unlockWorld()} is called.
+     */
+    public void lockWorld() {
+        this.worldLock.writeLock().lock();
+    }
+
+    public void unlockWorld() {
+        this.worldLock.writeLock().unlock();
+    }
+
+    public long getChunksLit() {
+        return this.chunksLit.sum();
+    }
+
+    public long getLightingNanos() {
+        return this.lightingNanos.sum();
+    }
+
+    public int getPendingCount() {
+        synchronized (this.pending) {
+            return this.pending.size();
+        }
+    }
+
+    // must hold the pending lock
+    private void startTasks() {
+        if (this.runningCount >= this.maxRunning || this.pending.isEmpty()) {
+            return;
+        }
+
+        final long[] skipped = this.skipped;
+        int skippedCount = 0;
+
+        final Iterator<Task> iterator = this.pending.iterator();
+        for (int scanned = 0; scanned < SCAN_WINDOW && iterator.hasNext() && this.runningCount < this.maxRunning; ++scanned) {
+            final Task task = iterator.next();
+
+            if (conflicts(task.chunkCoordinate, this.running, this.runningCount) || conflicts(task.chunkCoordinate, skipped, skippedCount)) {
+                skipped[skippedCount++] = task.chunkCoordinate;
+                continue;
+            }
+
+            iterator.remove();
+            this.running[this.runningCount++] = task.chunkCoordinate;
+
+            this.executor.execute(() -> {
+                this.run(task);
+            });
+        }
+    }
+
+    private void run(final Task task) {
+        final long start = System.nanoTime();
+        this.worldLock.readLock().lock();
+        try {
+            task.run.run();
+        } catch (final Throwable thr) {
+            LOGGER.error("Failed to light chunk " + CoordinateUtils.getChunkX(task.chunkCoordinate) + ", " + CoordinateUtils.getChunkZ(task.chunkCoordinate), thr);
+        } finally {
+            this.worldLock.readLock().unlock();
+
+            this.chunksLit.increment();
+            this.lightingNanos.add(System.nanoTime() - start);
+
+            synchronized (this.pending) {
+                for (int i = 0; i < this.runningCount; ++i) {
+                    if (this.running[i] == task.chunkCoordinate) {
+                        this.running[i] = this.running[--this.runningCount];
+                        break;
+                    }
+                }
+                this.startTasks();
+            }
+        }
+    }
+
+    private static boolean conflicts(final long chunkCoordinate, final long[] others, final int count) {
+        final int chunkX = CoordinateUtils.getChunkX(chunkCoordinate);
+        final int chunkZ = CoordinateUtils.getChunkZ(chunkCoordinate);
+
+        for (int i = 0; i < count; ++i) {
+            final long other = others[i];
+            final int distance = Math.max(
+                    IntegerUtil.branchlessAbs(CoordinateUtils.getChunkX(other) - chunkX),
+                    IntegerUtil.branchlessAbs(CoordinateUtils.getChunkZ(other) - chunkZ)
+            );
+            if (distance <= StarLightInterface.REGION_SEPARATION) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static final class Task {
+
+        final long chunkCoordinate;
+        final Runnable run;
+
+        Task(final long chunkCoordinate, final Runnable run) {
+            this.chunkCoordinate = chunkCoordinate;
+            this.run = run;
+        }
+    }
+
+    private static final class Workers {
+
+        private static final AtomicInteger THREAD_ID = new AtomicInteger();
+
+        // lazily created by the first chunk lit in parallel, shared by every world
+        static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(GribCoreConfig.STARLIGHT_CHUNK_LIGHTING_THREADS, (final Runnable run) -> {
+            final Thread thread = new Thread(run);
+            thread.setName("Starlight Chunk Lighting Worker #" + THREAD_ID.getAndIncrement());
+            thread.setDaemon(true);
+            thread.setUncaughtExceptionHandler((final Thread t, final Throwable thr) -> {
+                LOGGER.error("Uncaught exception in thread " + t.getName(), thr);
+            });
+            return thread;
+        });
+
+        private Workers() {}
+    }
+}
@@ -0,0 +1,236 @@
+package gribland.gribcore.starlight.light;
+
+import gribland.gribcore.config.GribCoreConfig;
+import gribland.gribcore.starlight.util.CoordinateUtils;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import net.minecraft.core.SectionPos;
+import net.minecraft.server.level.ServerChunkCache;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ThreadedLevelLightEngine;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.LightLayer;
+import net.minecraft.world.level.chunk.ChunkAccess;
+import net.minecraft.world.level.chunk.ChunkStatus;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Relights a square region of chunks in batches, so that neither the chunk system nor the light thread has to deal with
+ * the whole region at once.
+ * <p>
+ * Jobs are driven from the main thread by {@link StarLightInterface#tickRelightJobs()}. Each batch is kept loaded with
+ * tickets, and once every chunk in it is lit it is handed to the light thread, where it is relit between propagation
+ * runs. At most one batch is in flight per job. The batch size adapts so that relighting one batch takes roughly
+ * {@link GribCoreConfig#STARLIGHT_RELIGHT_BUDGET_MS}. Chunks which do not exist yet are generated by the tickets.
+ * </p>
+ */
+public final class RelightJob {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private static final int MIN_BATCH_SIZE = 1;
+    private static final int MAX_BATCH_SIZE = 256;
+
+    public enum State {
+        RUNNING, COMPLETED, CANCELLED, FAILED
+    }
+
+    private final StarLightInterface lightInterface;
+    private final ServerLevel world;
+    private final ChunkPos center;
+    private final int radius;
+    private final long budgetNanos;
+
+    // in BFS order from the center, as recommended by StarLightEngine#relightChunks
+    private final LongArrayList chunks;
+    private int nextChunk;
+
+    // main thread only
+    private Set<ChunkPos> batch;
+    private boolean batchSubmitted;
+    private int batchSize = 16;
+
+    // written by the light thread
+    private volatile boolean batchDone;
+    private volatile int relitChunks;
+    private volatile Throwable failure;
+
+    private volatile State state = State.RUNNING;
+    private volatile boolean cancelRequested;
+    private final long startTime;
+    private volatile long endTime;
+
+    RelightJob(final StarLightInterface lightInterface, final ServerLevel world, final ChunkPos center, final int radius) {
+        this.lightInterface = lightInterface;
+        this.world = world;
+        this.center = center;
+        this.radius = radius;
+        this.budgetNanos = GribCoreConfig.STARLIGHT_RELIGHT_BUDGET_MS * 1_000_000L;
+        this.chunks = new LongArrayList((2 * radius + 1) * (2 * radius + 1));
+
+        for (int r = 0; r <= radius; ++r) {
+            // ring at distance r
+            for (int dx = -r; dx <= r; ++dx) {
+                for (int dz = -r; dz <= r; ++dz) {
+                    if (Math.max(Math.abs(dx), Math.abs(dz)) != r) {
+                        continue;
+                    }
+                    this.chunks.add(CoordinateUtils.getChunkKey(center.x + dx, center.z + dz));
+                }
+            }
+        }
+
+        this.startTime = System.nanoTime();
+    }
+
+    public ChunkPos getCenter() {
+        return this.center;
+    }
+
+    public int getRadius() {
+        return this.radius;
+    }
+
+    public State getState() {
+        return this.state;
+    }
+
+    public Throwable getFailure() {
+        return this.failure;
+    }
+
+    public int getTotalChunks() {
+        return this.chunks.size();
+    }
+
+    public int getRelitChunks() {
+        return this.relitChunks;
+    }
+
+    public double getChunksPerSecond() {
+        final long end = this.state == State.RUNNING ? System.nanoTime() : this.endTime;
+        final long elapsed = Math.max(1L, end - this.startTime);
+        return (double)this.relitChunks / ((double)elapsed * 1.0E-9);
+    }
+
+    public boolean isDone() {
+        return this.state != State.RUNNING;
+    }
+
+    /**
+     * Stops the job after the batch currently being relit, if any.
+     */
+    public void cancel() {
+        this.cancelRequested = true;
+    }
+
+    // main thread, rets whether the job is still running
+    boolean tick() {
+        if (this.state != State.RUNNING) {
+            return false;
+        }
+
+        if (this.batch != null) {
+            if (!this.batchSubmitted) {
+                if (this.cancelRequested) {
+                    this.releaseBatch(false);
+                } else if (this.isBatchReady()) {
+                    this.submitBatch();
+                    return true;
+                } else {
+                    // wait for the chunks to load
+                    return true;
+                }
+            } else if (this.batchDone) {
+                this.releaseBatch(this.failure == null);
+            } else {
+                return true;
+            }
+        }
+
+        if (this.failure != null) {
+            return this.finish(State.FAILED);
+        }
+        if (this.cancelRequested) {
+            return this.finish(State.CANCELLED);
+        }
+        if (this.nextChunk >= this.chunks.size()) {
+            return this.finish(State.COMPLETED);
+        }
+
+        final int end = Math.min(this.chunks.size(), this.nextChunk + this.batchSize);
+        final Set<ChunkPos> batch = new LinkedHashSet<>();
+        for (int i = this.nextChunk; i < end; ++i) {
+            final ChunkPos pos = new ChunkPos(this.chunks.getLong(i));
+            batch.add(pos);
+            // radius 1 so that the neighbours are available to the relight
+            this.world.getChunkSource().addRegionTicket(StarLightInterface.CHUNK_RELIGHT_TICKET, pos, 1, pos);
+        }
+        this.nextChunk = end;
+        this.batch = batch;
+        this.batchSubmitted = false;
+        this.batchDone = false;
+
+        return true;
+    }
+
+    private boolean finish(final State state) {
+        this.endTime = System.nanoTime();
+        this.state = state;
+        return false;
+    }
+
+    private boolean isBatchReady() {
+        for (final ChunkPos pos : this.batch) {
+            final ChunkAccess chunk = this.lightInterface.getAnyChunkNow(pos.x, pos.z);
+            if (chunk == null || !chunk.getStatus().isOrAfter(ChunkStatus.LIGHT) || !chunk.isLightCorrect()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void submitBatch() {
+        final Set<ChunkPos> batch = this.batch;
+        this.batchSubmitted = true;
+
+        this.lightInterface.queueExclusiveTask(() -> {
+            final long start = System.nanoTime();
+            try {
+                this.lightInterface.relightChunks(batch, null, null);
+                this.relitChunks += batch.size();
+            } catch (final Throwable thr) {
+                LOGGER.error("Failed to relight chunks " + batch + " for job centered at " + this.center, thr);
+                this.failure = thr;
+            }
+            this.adjustBatchSize(batch.size(), System.nanoTime() - start);
+            this.batchDone = true;
+        });
+        ((ThreadedLevelLightEngine)this.world.getChunkSource().getLightEngine()).tryScheduleUpdate();
+    }
+
+    // light thread, the main thread will not read the batch size until batchDone is set
+    private void adjustBatchSize(final int size, final long elapsed) {
+        final long target = (long)size * this.budgetNanos / Math.max(1L, elapsed);
+        final int next = (int)Math.max(size / 2, Math.min(size * 2L, target));
+        this.batchSize = Math.max(MIN_BATCH_SIZE, Math.min(MAX_BATCH_SIZE, next));
+    }
+
+    private void releaseBatch(final boolean relit) {
+        final ServerChunkCache chunkSource = this.world.getChunkSource();
+        for (final ChunkPos pos : this.batch) {
+            if (relit) {
+                // send the new light to players, and mark the chunk for saving
+                for (int sectionY = this.lightInterface.minLightSection; sectionY <= this.lightInterface.maxLightSection; ++sectionY) {
+                    final SectionPos sectionPos = SectionPos.of(pos.x, sectionY, pos.z);
+                    chunkSource.onLightUpdate(LightLayer.BLOCK, sectionPos);
+                    chunkSource.onLightUpdate(LightLayer.SKY, sectionPos);
+                }
+            }
+            chunkSource.removeRegionTicket(StarLightInterface.CHUNK_RELIGHT_TICKET, pos, 1, pos);
+        }
+        this.batch = null;
+    }
+}
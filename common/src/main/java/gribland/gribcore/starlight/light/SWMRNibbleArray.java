@@ -1,8 +1,12 @@
 package gribland.gribcore.starlight.light;
 
+import gribland.gribcore.config.GribCoreConfig;
 import net.minecraft.world.level.chunk.DataLayer;
 import java.util.ArrayDeque;
 import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 // SWMR -> Single Writer Multi Reader Nibble Array
 public final class SWMRNibbleArray {
@@ -15,18 +19,49 @@ public final class SWMRNibbleArray {
      * Uninitialised nibble - They are all 0, but the backing array isn't initialised.
      *
      * Initialised nibble - Has light data.
+     *
+     * Uniform nibble - Every light level is the same value, and the backing array isn't initialised. Only used if
+     * uniform sections are enabled, and promoted to an initialised nibble on the first write of a different value.
+     * Never saved: save data and Vanilla data see it as the equivalent initialised or uninitialised nibble.
      */
 
     protected static final int INIT_STATE_NULL   = 0; // null
     protected static final int INIT_STATE_UNINIT = 1; // uninitialised
     protected static final int INIT_STATE_INIT   = 2; // initialised
     protected static final int INIT_STATE_HIDDEN = 3; // initialised, but conversion to Vanilla data should be treated as if NULL
+    protected static final int INIT_STATE_UNIFORM = 4; // initialised, but every value is the same
 
     public static final int ARRAY_SIZE = 16 * 16 * 16 / (8/4); // blocks / bytes per block
     // this allows us to maintain only 1 byte array when we're not updating
     static final ThreadLocal<ArrayDeque<byte[]>> WORKING_BYTES_POOL = ThreadLocal.withInitial(ArrayDeque::new);
 
+    public static final boolean UNIFORM_SECTIONS = GribCoreConfig.STARLIGHT_UNIFORM_NIBBLES;
+
+    /*
+     * Pooled storage - instead of the per-thread working pool, every array owned by a nibble comes from and returns to
+     * one pool shared by all threads. Arrays are returned once they're no longer visible, or when the owning chunk is
+     * unloaded (see release()), so storage freed by the main thread can be reused by the light or worldgen threads.
+     * Arrays that are dropped without being released (for example client or proto chunk storage) are left for the GC
+     * and stay counted as live.
+     */
+    public static final boolean POOLED_STORAGE = GribCoreConfig.STARLIGHT_POOLED_NIBBLE_STORAGE;
+    private static final int SHARED_POOL_CAPACITY = GribCoreConfig.STARLIGHT_NIBBLE_POOL_SIZE;
+    private static final ConcurrentLinkedQueue<byte[]> SHARED_BYTES_POOL = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger SHARED_POOL_SIZE = new AtomicInteger();
+    private static final LongAdder LIVE_ARRAYS = new LongAdder();
+
     private static byte[] allocateBytes() {
+        if (POOLED_STORAGE) {
+            LIVE_ARRAYS.increment();
+            final byte[] inPool = SHARED_BYTES_POOL.poll();
+            if (inPool != null) {
+                SHARED_POOL_SIZE.getAndDecrement();
+                return inPool;
+            }
+
+            return new byte[ARRAY_SIZE];
+        }
+
         final byte[] inPool = WORKING_BYTES_POOL.get().pollFirst();
         if (inPool != null) {
             return inPool;
@@ -36,9 +71,47 @@ public final class SWMRNibbleArray {
     }
 
     private static void freeBytes(final byte[] bytes) {
+        if (POOLED_STORAGE) {
+            LIVE_ARRAYS.decrement();
+            if (SHARED_POOL_SIZE.getAndIncrement() < SHARED_POOL_CAPACITY) {
+                SHARED_BYTES_POOL.add(bytes);
+            } else {
+                SHARED_POOL_SIZE.getAndDecrement();
+            }
+            return;
+        }
+
         WORKING_BYTES_POOL.get().addFirst(bytes);
     }
 
+    // drops an owned array that readers may still hold, so it cannot be reused
+    private static void discardBytes(final byte[] bytes) {
+        if (POOLED_STORAGE && bytes != null) {
+            LIVE_ARRAYS.decrement();
+        }
+    }
+
+    // takes ownership of an array not allocated by the pool
+    private static void adoptBytes(final byte[] bytes) {
+        if (POOLED_STORAGE && bytes != null) {
+            LIVE_ARRAYS.increment();
+        }
+    }
+
+    /**
+     * Returns the number of bytes held by nibbles using pooled storage, or 0 if pooled storage is disabled.
+     */
+    public static long getLiveBytes() {
+        return LIVE_ARRAYS.sum() * ARRAY_SIZE;
+    }
+
+    /**
+     * Returns the number of bytes kept in the shared pool for reuse, or 0 if pooled storage is disabled.
+     */
+    public static long getPooledBytes() {
+        return (long)SHARED_POOL_SIZE.get() * ARRAY_SIZE;
+    }
+
     public static SWMRNibbleArray fromVanilla(final DataLayer nibble) {
         if (nibble == null) {
             return new SWMRNibbleArray(null, true);
@@ -55,6 +128,9 @@ public final class SWMRNibbleArray {
     protected byte[] storageUpdating;
     protected boolean updatingDirty; // only returns whether storageUpdating is dirty
     protected volatile byte[] storageVisible;
+    // the value returned for reads while the storage is null. always 0 unless the state is uniform
+    protected int uniformUpdating;
+    protected volatile int uniformVisible;
 
     public SWMRNibbleArray() {
         this(null, false); // lazy init
@@ -70,6 +146,9 @@ public final class SWMRNibbleArray {
         }
         this.stateVisible = this.stateUpdating = bytes == null ? (isNullNibble ? INIT_STATE_NULL : INIT_STATE_UNINIT) : INIT_STATE_INIT;
         this.storageUpdating = this.storageVisible = bytes;
+        if (!this.tryCompressInitial()) {
+            adoptBytes(bytes);
+        }
     }
 
     public SWMRNibbleArray(final byte[] bytes, final int state) {
@@ -81,6 +160,48 @@ public final class SWMRNibbleArray {
         }
         this.stateUpdating = this.stateVisible = state;
         this.storageUpdating = this.storageVisible = bytes;
+        if (!this.tryCompressInitial()) {
+            adoptBytes(bytes);
+        }
+    }
+
+    // converts initialised data with only one value into a uniform nibble, rets whether the data was dropped
+    private boolean tryCompressInitial() {
+        if (!UNIFORM_SECTIONS || this.stateUpdating != INIT_STATE_INIT) {
+            return false;
+        }
+        final int value = getUniformValue(this.storageUpdating);
+        if (value == -1) {
+            return false;
+        }
+
+        this.stateUpdating = this.stateVisible = INIT_STATE_UNIFORM;
+        this.storageUpdating = this.storageVisible = null;
+        this.uniformUpdating = this.uniformVisible = value;
+        return true;
+    }
+
+    // rets the value of every light level in the data, or -1 if they are not all the same
+    protected static int getUniformValue(final byte[] data) {
+        final byte first = data[0];
+        if (((first >>> 4) & 0xF) != (first & 0xF)) {
+            return -1;
+        }
+        for (int i = 1; i < ARRAY_SIZE; ++i) {
+            if (data[i] != first) {
+                return -1;
+            }
+        }
+
+        return first & 0xF;
+    }
+
+    protected static byte[] getFilledBytes(final int value) {
+        final byte[] ret = new byte[ARRAY_SIZE];
+        if (value != 0) {
+            Arrays.fill(ret, (byte)(value | (value << 4)));
+        }
+        return ret;
     }
 
     @Override
@@ -100,6 +221,9 @@ public final class SWMRNibbleArray {
             case INIT_STATE_HIDDEN:
                 stringBuilder.append("hidden");
                 break;
+            case INIT_STATE_UNIFORM:
+                stringBuilder.append("uniform (").append(this.uniformVisible).append(")");
+                break;
             default:
                 stringBuilder.append("unknown");
                 break;
@@ -138,6 +262,10 @@ public final class SWMRNibbleArray {
             if (state == INIT_STATE_UNINIT) {
                 return new SaveState(null, state);
             }
+            if (state == INIT_STATE_UNIFORM) {
+                final int value = this.uniformVisible;
+                return value == 0 ? new SaveState(null, INIT_STATE_UNINIT) : new SaveState(getFilledBytes(value), INIT_STATE_INIT);
+            }
             final boolean zero = isAllZero(data);
             if (zero) {
                 return state == INIT_STATE_INIT ? new SaveState(null, INIT_STATE_UNINIT) : null;
@@ -169,19 +297,29 @@ public final class SWMRNibbleArray {
             throw new IllegalArgumentException();
         }
 
-        if (other.storageUpdating == null) {
+        if (other.stateUpdating == INIT_STATE_UNIFORM && this.stateUpdating != INIT_STATE_HIDDEN) {
+            this.setUniform(other.uniformUpdating);
+            return;
+        }
+
+        if (other.storageUpdating == null && other.stateUpdating != INIT_STATE_UNIFORM) {
             this.setUninitialised();
             return;
         }
 
-        final byte[] src = other.storageUpdating;
+        final byte[] src = other.storageUpdating != null ? other.storageUpdating : getFilledBytes(other.uniformUpdating);
         final byte[] into;
 
-        if (this.storageUpdating != null) {
+        if (this.storageUpdating != null && this.updatingDirty) {
             into = this.storageUpdating;
+        } else if (this.storageUpdating != null) {
+            // the updating array is still the visible array, so it may not be written to. every byte is overwritten
+            // below, so there is no need to copy it
+            this.storageUpdating = into = allocateBytes();
         } else {
             this.storageUpdating = into = allocateBytes();
             this.stateUpdating = INIT_STATE_INIT;
+            this.uniformUpdating = 0;
         }
         this.updatingDirty = true;
 
@@ -196,6 +334,10 @@ public final class SWMRNibbleArray {
 
     // operation type: updating
     public void setFull() {
+        if (UNIFORM_SECTIONS && this.stateUpdating != INIT_STATE_HIDDEN) {
+            this.setUniform(15);
+            return;
+        }
         if (this.stateUpdating != INIT_STATE_HIDDEN) {
             this.stateUpdating = INIT_STATE_INIT;
         }
@@ -205,6 +347,10 @@ public final class SWMRNibbleArray {
 
     // operation type: updating
     public void setZero() {
+        if (UNIFORM_SECTIONS && this.stateUpdating != INIT_STATE_HIDDEN) {
+            this.setUniform(0);
+            return;
+        }
         if (this.stateUpdating != INIT_STATE_HIDDEN) {
             this.stateUpdating = INIT_STATE_INIT;
         }
@@ -212,6 +358,30 @@ public final class SWMRNibbleArray {
         this.updatingDirty = true;
     }
 
+    // operation type: updating
+    protected void setUniform(final int value) {
+        if (this.storageUpdating != null && this.updatingDirty) {
+            freeBytes(this.storageUpdating);
+        }
+        this.storageUpdating = null;
+        this.stateUpdating = INIT_STATE_UNIFORM;
+        this.uniformUpdating = value;
+        // the value may change without the state changing, so always mark dirty
+        this.updatingDirty = true;
+    }
+
+    // operation type: updating
+    protected void promoteUniform() {
+        final byte[] bytes = allocateBytes();
+        final int value = this.uniformUpdating;
+        Arrays.fill(bytes, (byte)(value | (value << 4)));
+
+        this.storageUpdating = bytes;
+        this.stateUpdating = INIT_STATE_INIT;
+        this.uniformUpdating = 0;
+        this.updatingDirty = true;
+    }
+
     // operation type: updating
     public void setNonNull() {
         if (this.stateUpdating == INIT_STATE_HIDDEN) {
@@ -227,6 +397,7 @@ public final class SWMRNibbleArray {
     // operation type: updating
     public void setNull() {
         this.stateUpdating = INIT_STATE_NULL;
+        this.uniformUpdating = 0;
         if (this.updatingDirty && this.storageUpdating != null) {
             freeBytes(this.storageUpdating);
         }
@@ -237,6 +408,7 @@ public final class SWMRNibbleArray {
     // operation type: updating
     public void setUninitialised() {
         this.stateUpdating = INIT_STATE_UNINIT;
+        this.uniformUpdating = 0;
         if (this.storageUpdating != null && this.updatingDirty) {
             freeBytes(this.storageUpdating);
         }
@@ -249,6 +421,9 @@ public final class SWMRNibbleArray {
         if (this.stateUpdating == INIT_STATE_HIDDEN) {
             return;
         }
+        if (this.stateUpdating == INIT_STATE_UNIFORM) {
+            this.promoteUniform();
+        }
         if (this.stateUpdating != INIT_STATE_INIT) {
             this.setNull();
         } else {
@@ -283,12 +458,13 @@ public final class SWMRNibbleArray {
 
     // operation type: updating
     public boolean isInitialisedUpdating() {
-        return this.stateUpdating == INIT_STATE_INIT;
+        return this.stateUpdating == INIT_STATE_INIT || this.stateUpdating == INIT_STATE_UNIFORM;
     }
 
     // operation type: visible
     public boolean isInitialisedVisible() {
-        return this.stateVisible == INIT_STATE_INIT;
+        final int state = this.stateVisible;
+        return state == INIT_STATE_INIT || state == INIT_STATE_UNIFORM;
     }
 
     // operation type: updating
@@ -327,11 +503,19 @@ public final class SWMRNibbleArray {
         }
 
         synchronized (this) {
-            if (this.stateUpdating == INIT_STATE_NULL || this.stateUpdating == INIT_STATE_UNINIT) {
+            if (this.stateUpdating == INIT_STATE_NULL || this.stateUpdating == INIT_STATE_UNINIT || this.stateUpdating == INIT_STATE_UNIFORM) {
+                // readers check the storage before the uniform value, so write the value first
+                this.uniformVisible = this.uniformUpdating;
+                discardBytes(this.storageVisible);
                 this.storageVisible = null;
             } else {
                 if (this.storageVisible == null) {
-                    this.storageVisible = this.storageUpdating.clone();
+                    if (POOLED_STORAGE) {
+                        // the updating array is no longer written to once it's visible, so there is no need to copy it
+                        this.storageVisible = this.storageUpdating;
+                    } else {
+                        this.storageVisible = this.storageUpdating.clone();
+                    }
                 } else {
                     if (this.storageUpdating != this.storageVisible) {
                         System.arraycopy(this.storageUpdating, 0, this.storageVisible, 0, ARRAY_SIZE);
@@ -350,6 +534,32 @@ public final class SWMRNibbleArray {
         return true;
     }
 
+    // operation type: updating
+    // returns the storage of this nibble to the shared pool and makes it null. the caller must ensure no updates to
+    // this nibble can happen concurrently, and that readers can no longer observe the nibble (i.e. its chunk is unloaded)
+    public void release() {
+        if (!POOLED_STORAGE) {
+            return;
+        }
+
+        synchronized (this) {
+            final byte[] updating = this.storageUpdating;
+            final byte[] visible = this.storageVisible;
+
+            this.stateUpdating = this.stateVisible = INIT_STATE_NULL;
+            this.storageUpdating = this.storageVisible = null;
+            this.uniformUpdating = this.uniformVisible = 0;
+            this.updatingDirty = false;
+
+            if (updating != null && updating != visible) {
+                freeBytes(updating);
+            }
+            if (visible != null) {
+                freeBytes(visible);
+            }
+        }
+    }
+
     // operation type: visible
     public DataLayer toVanillaNibble() {
         synchronized (this) {
@@ -361,6 +571,10 @@ public final class SWMRNibbleArray {
                     return new DataLayer();
                 case INIT_STATE_INIT:
                     return new DataLayer(this.storageVisible.clone());
+                case INIT_STATE_UNIFORM: {
+                    final int value = this.uniformVisible;
+                    return value == 0 ? new DataLayer() : new DataLayer(getFilledBytes(value));
+                }
                 default:
                     throw new IllegalStateException();
             }
@@ -379,7 +593,7 @@ public final class SWMRNibbleArray {
         // indices range from 0 -> 4096
         final byte[] bytes = this.storageUpdating;
         if (bytes == null) {
-            return 0;
+            return this.uniformUpdating;
         }
         final byte value = bytes[index >>> 1];
 
@@ -398,7 +612,7 @@ public final class SWMRNibbleArray {
         // indices range from 0 -> 4096
         final byte[] visibleBytes = this.storageVisible;
         if (visibleBytes == null) {
-            return 0;
+            return this.uniformVisible;
         }
         final byte value = visibleBytes[index >>> 1];
 
@@ -414,7 +628,12 @@ public final class SWMRNibbleArray {
 
     // operation type: updating
     public void set(final int index, final int value) {
-        if (!this.updatingDirty) {
+        if (this.stateUpdating == INIT_STATE_UNIFORM) {
+            if (value == this.uniformUpdating) {
+                return;
+            }
+            this.promoteUniform();
+        } else if (!this.updatingDirty) {
             this.swapUpdatingAndMarkDirty();
         }
         final int shift = (index & 1) << 2;
@@ -1,8 +1,11 @@
 package gribland.gribcore.starlight.light;
 
+import gribland.gribcore.config.GribCoreConfig;
 import gribland.gribcore.starlight.blockstate.ExtendedAbstractBlockState;
 import gribland.gribcore.starlight.chunk.ExtendedChunk;
 import gribland.gribcore.starlight.util.WorldUtil;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongSet;
 import it.unimi.dsi.fastutil.shorts.ShortCollection;
 import it.unimi.dsi.fastutil.shorts.ShortIterator;
 import net.minecraft.core.BlockPos;
@@ -14,10 +17,10 @@ import net.minecraft.world.level.chunk.ChunkAccess;
 import net.minecraft.world.level.chunk.ChunkStatus;
 import net.minecraft.world.level.chunk.LevelChunkSection;
 import net.minecraft.world.level.chunk.LightChunkGetter;
+import net.minecraft.world.level.levelgen.Heightmap;
 import net.minecraft.world.phys.shapes.Shapes;
 import net.minecraft.world.phys.shapes.VoxelShape;
 import java.util.Arrays;
-import java.util.Set;
 
 @SuppressWarnings("ALL")
 public final class SkyStarLightEngine extends StarLightEngine {
@@ -53,9 +56,18 @@ public final class SkyStarLightEngine extends StarLightEngine {
 
     protected final boolean[] nullPropagationCheckCache;
 
+    // the client does not receive every heightmap
+    protected final boolean useSurfaceHeightMap;
+
     public SkyStarLightEngine(final Level world) {
+        this(world, GribCoreConfig.STARLIGHT_SKY_HEIGHTMAP);
+    }
+
+    // the benchmarks compare both settings in one run
+    SkyStarLightEngine(final Level world, final boolean useSurfaceHeightMap) {
         super(true, world);
         this.nullPropagationCheckCache = new boolean[WorldUtil.getTotalLightSections(world)];
+        this.useSurfaceHeightMap = useSurfaceHeightMap && !world.isClientSide;
     }
 
     @Override
@@ -361,7 +373,7 @@ public final class SkyStarLightEngine extends StarLightEngine {
     }
 
     @Override
-    protected void propagateBlockChanges(final LightChunkGetter lightAccess, final ChunkAccess atChunk, final Set<BlockPos> positions) {
+    protected void propagateBlockChanges(final LightChunkGetter lightAccess, final ChunkAccess atChunk, final LongSet positions) {
         this.rewriteNibbleCacheForSkylight(atChunk);
         Arrays.fill(this.nullPropagationCheckCache, false);
 
@@ -371,11 +383,13 @@ public final class SkyStarLightEngine extends StarLightEngine {
         final int heightMapOffset = chunkX * -16 + (chunkZ * (-16 * 16));
 
         // setup heightmap for changes
-        for (final BlockPos pos : positions) {
-            final int index = pos.getX() + (pos.getZ() << 4) + heightMapOffset;
+        for (final LongIterator iterator = positions.iterator(); iterator.hasNext();) {
+            final long pos = iterator.nextLong();
+            final int index = BlockPos.getX(pos) + (BlockPos.getZ(pos) << 4) + heightMapOffset;
             final int curr = this.heightMapBlockChange[index];
-            if (pos.getY() > curr) {
-                this.heightMapBlockChange[index] = pos.getY();
+            final int y = BlockPos.getY(pos);
+            if (y > curr) {
+                this.heightMapBlockChange[index] = y;
             }
         }
 
@@ -445,8 +459,9 @@ public final class SkyStarLightEngine extends StarLightEngine {
         this.processDelayedIncreases();
         this.processDelayedDecreases();
 
-        for (final BlockPos pos : positions) {
-            this.checkBlock(lightAccess, pos.getX(), pos.getY(), pos.getZ());
+        for (final LongIterator iterator = positions.iterator(); iterator.hasNext();) {
+            final long pos = iterator.nextLong();
+            this.checkBlock(lightAccess, BlockPos.getX(pos), BlockPos.getY(pos), BlockPos.getZ(pos));
         }
 
         this.performLightDecrease(lightAccess);
@@ -545,7 +560,10 @@ public final class SkyStarLightEngine extends StarLightEngine {
             final int startY = highestNonEmptySection << 4 | 15;
             for (int currZ = minZ; currZ <= maxZ; ++currZ) {
                 for (int currX = minX; currX <= maxX; ++currX) {
-                    this.tryPropagateSkylight(world, currX, startY + 1, currZ, false, false);
+                    // the world surface heightmap is kept up to date by the chunk on every block change, so everything
+                    // above it is known to be air: it is filled in bulk, and only the blocks below are read
+                    final int highestBlockY = this.useSurfaceHeightMap ? chunk.getHeight(Heightmap.Types.WORLD_SURFACE, currX, currZ) : Integer.MAX_VALUE;
+                    this.tryPropagateSkylight(world, currX, startY + 1, currZ, false, false, highestBlockY);
                 }
             }
         } // else: apparently the chunk is empty
@@ -611,6 +629,13 @@ public final class SkyStarLightEngine extends StarLightEngine {
     // clobbering the light values will result in broken propagation)
     protected final int tryPropagateSkylight(final BlockGetter world, final int worldX, int startY, final int worldZ,
                                              final boolean extrudeInitialised, final boolean delayLightSet) {
+        return this.tryPropagateSkylight(world, worldX, startY, worldZ, extrudeInitialised, delayLightSet, Integer.MAX_VALUE);
+    }
+
+    // every block above highestBlockY must be air
+    protected final int tryPropagateSkylight(final BlockGetter world, final int worldX, int startY, final int worldZ,
+                                             final boolean extrudeInitialised, final boolean delayLightSet,
+                                             final int highestBlockY) {
         final BlockPos.MutableBlockPos mutablePos = this.mutablePos3;
         final int encodeOffset = this.coordinateOffset;
         final long propagateDirection = AxisDirection.POSITIVE_Y.everythingButThisDirection; // just don't check upwards.
@@ -622,7 +647,15 @@ public final class SkyStarLightEngine extends StarLightEngine {
         // ensure this section is always checked
         this.checkNullSection(worldX >> 4, startY >> 4, worldZ >> 4, extrudeInitialised);
 
-        BlockState above = this.getBlockState(worldX, startY + 1, worldZ);
+        BlockState above;
+        if (highestBlockY < startY) {
+            startY = this.fillExposedSkylight(worldX, startY, worldZ, Math.max(highestBlockY, (this.minLightSection << 4) - 1),
+                    extrudeInitialised, delayLightSet);
+            // everything above is either filled air or a skipped null section
+            above = AIR_BLOCK_STATE;
+        } else {
+            above = (startY + 1) > highestBlockY ? AIR_BLOCK_STATE : this.getBlockState(worldX, startY + 1, worldZ);
+        }
 
         for (;startY >= (this.minLightSection << 4); --startY) {
             if ((startY & 15) == 15) {
@@ -709,4 +742,45 @@ public final class SkyStarLightEngine extends StarLightEngine {
 
         return startY;
     }
+
+    // queues and sets full skylight for the column from startY down to, but excluding, bottomY, all of which must be air.
+    // this is what the walk in tryPropagateSkylight does for air, without reading or checking any block.
+    // rets the y the walk continues at
+    protected final int fillExposedSkylight(final int worldX, int startY, final int worldZ, final int bottomY,
+                                            final boolean extrudeInitialised, final boolean delayLightSet) {
+        final int encodeOffset = this.coordinateOffset;
+        final long propagateDirection = AxisDirection.POSITIVE_Y.everythingButThisDirection; // just don't check upwards.
+        final int chunkX = worldX >> 4;
+        final int chunkZ = worldZ >> 4;
+        final int localXZ = (worldX & 15) | ((worldZ & 15) << 4);
+
+        while (startY > bottomY) {
+            final int chunkY = startY >> 4;
+            if ((startY & 15) == 15) {
+                // ensure this section is always checked
+                this.checkNullSection(chunkX, chunkY, chunkZ, extrudeInitialised);
+            }
+
+            if (this.getNibbleFromCache(chunkX, chunkY, chunkZ) == null) {
+                // nothing can propagate in null sections, skip to the top of the section below
+                startY = (chunkY << 4) - 1;
+                continue;
+            }
+
+            final int sectionIndex = chunkX + 5 * chunkZ + (5 * 5) * chunkY + this.chunkSectionIndexOffset;
+            for (final int stopY = Math.max(bottomY + 1, chunkY << 4); startY >= stopY; --startY) {
+                // light set delayed until we determine if this nibble section is null
+                this.appendToIncreaseQueue(
+                        ((worldX + (worldZ << 6) + (startY << (6 + 6)) + encodeOffset) & ((1L << (6 + 6 + 16)) - 1))
+                                | (15L << (6 + 6 + 16)) // we know we're at full lit here
+                                | (propagateDirection << (6 + 6 + 16 + 4))
+                );
+                if (!delayLightSet) {
+                    this.setLightLevel(sectionIndex, localXZ | ((startY & 15) << 8), worldX, startY, worldZ, 15);
+                }
+            }
+        }
+
+        return startY;
+    }
 }
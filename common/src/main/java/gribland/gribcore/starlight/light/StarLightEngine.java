@@ -5,6 +5,7 @@ import gribland.gribcore.starlight.util.CoordinateUtils;
 import gribland.gribcore.starlight.util.IntegerUtil;
 import gribland.gribcore.starlight.util.WorldUtil;
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongSet;
 import it.unimi.dsi.fastutil.shorts.ShortCollection;
 import it.unimi.dsi.fastutil.shorts.ShortIterator;
 import net.minecraft.core.BlockPos;
@@ -106,6 +107,14 @@ public abstract class StarLightEngine {
     // index = x + (z * 5)
     protected final boolean[][] emptinessMapCache = new boolean[5 * 5][];
 
+    // the chunks of the previous setupCaches call, only kept while retainChunks is set
+    // index = x + (z * 5), relative to the retained center
+    protected final ChunkAccess[] retainedChunks = new ChunkAccess[5 * 5];
+    protected boolean retainChunks;
+    protected boolean hasRetainedChunks;
+    protected int retainedCenterX;
+    protected int retainedCenterZ;
+
     protected final BlockPos.MutableBlockPos mutablePos1 = new BlockPos.MutableBlockPos();
     protected final BlockPos.MutableBlockPos mutablePos2 = new BlockPos.MutableBlockPos();
     protected final BlockPos.MutableBlockPos mutablePos3 = new BlockPos.MutableBlockPos();
@@ -169,6 +178,51 @@ public abstract class StarLightEngine {
         this.chunkSectionIndexOffset = this.chunkIndexOffset + ((5 * 5) * this.chunkOffsetY);
     }
 
+    /**
+     * Sets whether the chunks looked up for one task should be reused by the next task whose window overlaps it. Only
+     * the chunk lookups are reused: sections and nibbles are always read again from the chunks, and chunks which could
+     * not be used are looked up again. Chunks unloaded and loaded again while they are retained are not noticed, so
+     * retention must only be enabled for a single batch of tasks removed from the light queue, and the retained chunks
+     * must be dropped with {@link #clearRetainedChunks()} whenever chunks may have been replaced within the batch.
+     */
+    public final void setRetainChunks(final boolean retainChunks) {
+        this.retainChunks = retainChunks;
+        if (!retainChunks) {
+            this.clearRetainedChunks();
+        }
+    }
+
+    /**
+     * Drops the retained chunks, so the next task looks up all of its chunks again.
+     */
+    public final void clearRetainedChunks() {
+        if (this.hasRetainedChunks) {
+            this.hasRetainedChunks = false;
+            Arrays.fill(this.retainedChunks, null);
+        }
+    }
+
+    protected final ChunkAccess getChunkForSetup(final LightChunkGetter chunkProvider, final int chunkX, final int chunkZ) {
+        if (this.hasRetainedChunks) {
+            final int dx = chunkX - this.retainedCenterX;
+            final int dz = chunkZ - this.retainedCenterZ;
+            if (IntegerUtil.branchlessAbs(dx) <= 2 && IntegerUtil.branchlessAbs(dz) <= 2) {
+                final ChunkAccess retained = this.retainedChunks[(dx + 2) + 5 * (dz + 2)];
+                if (retained != null) {
+                    if (LightEngineMetrics.ENABLED) {
+                        LightEngineMetrics.recordChunkLookup(true);
+                    }
+                    return retained;
+                }
+            }
+        }
+
+        if (LightEngineMetrics.ENABLED) {
+            LightEngineMetrics.recordChunkLookup(false);
+        }
+        return (ChunkAccess)chunkProvider.getChunkForLighting(chunkX, chunkZ);
+    }
+
     protected final void setupCaches(final LightChunkGetter chunkProvider, final int centerX, final int centerY, final int centerZ,
                                      final boolean relaxed, final boolean tryToLoadChunksFor2Radius) {
         final int centerChunkX = centerX >> 4;
@@ -184,7 +238,7 @@ public abstract class StarLightEngine {
                 final int cx = centerChunkX + dx;
                 final int cz = centerChunkZ + dz;
                 final boolean isTwoRadius = Math.max(IntegerUtil.branchlessAbs(dx), IntegerUtil.branchlessAbs(dz)) == 2;
-                final ChunkAccess chunk = (ChunkAccess)chunkProvider.getChunkForLighting(cx, cz);
+                final ChunkAccess chunk = this.getChunkForSetup(chunkProvider, cx, cz);
 
                 if (chunk == null) {
                     if (relaxed | isTwoRadius) {
@@ -205,6 +259,14 @@ public abstract class StarLightEngine {
                 }
             }
         }
+
+        if (this.retainChunks) {
+            // the chunk cache uses the same layout, centered on this chunk
+            System.arraycopy(this.chunkCache, 0, this.retainedChunks, 0, this.chunkCache.length);
+            this.retainedCenterX = centerChunkX;
+            this.retainedCenterZ = centerChunkZ;
+            this.hasRetainedChunks = true;
+        }
     }
 
     protected final ChunkAccess getChunkInCache(final int chunkX, final int chunkZ) {
@@ -411,7 +473,7 @@ public abstract class StarLightEngine {
     protected abstract boolean canUseChunk(final ChunkAccess chunk);
 
     public final void blocksChangedInChunk(final LightChunkGetter lightAccess, final int chunkX, final int chunkZ,
-                                           final Set<BlockPos> positions, final Boolean[] changedSections) {
+                                           final LongSet positions, final Boolean[] changedSections) {
         this.setupCaches(lightAccess, chunkX * 16 + 7, 128, chunkZ * 16 + 7, true, true);
         try {
             final ChunkAccess chunk = this.getChunkInCache(chunkX, chunkZ);
@@ -435,7 +497,8 @@ public abstract class StarLightEngine {
 
     // subclasses should not initialise caches, as this will always be done by the super call
     // subclasses should not invoke updateVisible, as this will always be done by the super call
-    protected abstract void propagateBlockChanges(final LightChunkGetter lightAccess, final ChunkAccess atChunk, final Set<BlockPos> positions);
+    // positions are packed with BlockPos#asLong
+    protected abstract void propagateBlockChanges(final LightChunkGetter lightAccess, final ChunkAccess atChunk, final LongSet positions);
 
     protected final BlockPos.MutableBlockPos checkBlockPos = new BlockPos.MutableBlockPos(); // Forge
 
@@ -738,6 +801,7 @@ public abstract class StarLightEngine {
     // rets non-null when the emptiness map changed and needs to be updated
     protected final boolean[] handleEmptySectionChanges(final LightChunkGetter lightAccess, final ChunkAccess chunk,
                                                         final Boolean[] emptinessChanges, final boolean unlit) {
+        final long start = LightEngineMetrics.ENABLED ? System.nanoTime() : 0L;
         final Level world = (Level)lightAccess.getLevel();
         final int chunkX = chunk.getPos().x;
         final int chunkZ = chunk.getPos().z;
@@ -850,6 +914,10 @@ public abstract class StarLightEngine {
             }
         }
 
+        if (LightEngineMetrics.ENABLED) {
+            LightEngineMetrics.recordPhase(LightEngineMetrics.Phase.EMPTY_SECTION_CHANGES, start);
+        }
+
         return ret;
     }
 
@@ -860,7 +928,11 @@ public abstract class StarLightEngine {
             if (chunk == null) {
                 return;
             }
+            final long start = LightEngineMetrics.ENABLED ? System.nanoTime() : 0L;
             this.checkChunkEdges(lightAccess, chunk, this.minLightSection, this.maxLightSection);
+            if (LightEngineMetrics.ENABLED) {
+                LightEngineMetrics.recordPhase(LightEngineMetrics.Phase.EDGE_CHECKS, start);
+            }
             this.updateVisible(lightAccess);
         } finally {
             this.destroyCaches();
@@ -874,7 +946,11 @@ public abstract class StarLightEngine {
             if (chunk == null) {
                 return;
             }
+            final long start = LightEngineMetrics.ENABLED ? System.nanoTime() : 0L;
             this.checkChunkEdges(lightAccess, chunk, sections);
+            if (LightEngineMetrics.ENABLED) {
+                LightEngineMetrics.recordPhase(LightEngineMetrics.Phase.EDGE_CHECKS, start);
+            }
             this.updateVisible(lightAccess);
         } finally {
             this.destroyCaches();
@@ -1102,6 +1178,7 @@ public abstract class StarLightEngine {
     }
 
     protected final void performLightIncrease(final LightChunkGetter lightAccess) {
+        final long start = LightEngineMetrics.ENABLED ? System.nanoTime() : 0L;
         final BlockGetter world = lightAccess.getLevel();
         long[] queue = this.increaseQueue;
         int queueReadIndex = 0;
@@ -1289,9 +1366,15 @@ public abstract class StarLightEngine {
                 }
             }
         }
+
+        if (LightEngineMetrics.ENABLED) {
+            LightEngineMetrics.recordPhase(LightEngineMetrics.Phase.INCREASE, start);
+            LightEngineMetrics.recordIncreaseQueue(queueLength);
+        }
     }
 
     protected final void performLightDecrease(final LightChunkGetter lightAccess) {
+        final long start = LightEngineMetrics.ENABLED ? System.nanoTime() : 0L;
         final BlockGetter world = lightAccess.getLevel();
         long[] queue = this.decreaseQueue;
         long[] increaseQueue = this.increaseQueue;
@@ -1568,6 +1651,11 @@ public abstract class StarLightEngine {
             }
         }
 
+        if (LightEngineMetrics.ENABLED) {
+            LightEngineMetrics.recordPhase(LightEngineMetrics.Phase.DECREASE, start);
+            LightEngineMetrics.recordDecreaseQueue(queueLength);
+        }
+
         // propagate sources we clobbered
         this.increaseQueueInitialLength = increaseQueueLength;
         this.performLightIncrease(lightAccess);
@@ -1,10 +1,17 @@
 package gribland.gribcore.starlight.light;
 
+import gribland.gribcore.config.GribCoreConfig;
 import gribland.gribcore.starlight.chunk.ExtendedChunk;
 import gribland.gribcore.starlight.util.CoordinateUtils;
+import gribland.gribcore.starlight.util.IntegerUtil;
 import gribland.gribcore.starlight.util.WorldUtil;
 import gribland.gribcore.starlight.world.ExtendedWorld;
-import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
 import it.unimi.dsi.fastutil.shorts.ShortCollection;
 import it.unimi.dsi.fastutil.shorts.ShortOpenHashSet;
 import net.minecraft.core.BlockPos;
@@ -19,19 +26,30 @@ import net.minecraft.world.level.chunk.DataLayer;
 import net.minecraft.world.level.chunk.LightChunkGetter;
 import net.minecraft.world.level.lighting.LayerLightEventListener;
 import net.minecraft.world.level.lighting.LevelLightEngine;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
 import java.util.function.IntConsumer;
 
 @SuppressWarnings("ALL")
 public final class StarLightInterface {
 
+    private static final Logger LOGGER = LogManager.getLogger();
+
     public static final TicketType<ChunkPos> CHUNK_WORK_TICKET = TicketType.create("starlight_chunk_work_ticket", (p1, p2) -> Long.compare(p1.toLong(), p2.toLong()));
+    public static final TicketType<ChunkPos> CHUNK_RELIGHT_TICKET = TicketType.create("starlight_relight", (p1, p2) -> Long.compare(p1.toLong(), p2.toLong()));
 
     /**
      * Can be {@code null}, indicating the light is all empty.
@@ -44,6 +62,15 @@ public final class StarLightInterface {
 
     protected final LightQueue lightQueue = new LightQueue(this);
 
+    // nibbles of unloaded chunks, released by the light thread so that they are never released during propagation
+    protected final ConcurrentLinkedQueue<SWMRNibbleArray[]> pendingStorageReleases = new ConcurrentLinkedQueue<>();
+    // tasks which may not run at the same time as any propagation, such as relighting
+    protected final ConcurrentLinkedQueue<Runnable> exclusiveTasks = new ConcurrentLinkedQueue<>();
+    // main thread only
+    protected final List<RelightJob> relightJobs = new ArrayList<>();
+    // null unless generated chunks are lit on the worker pool
+    protected final ParallelChunkLighter chunkLighter;
+
     protected final LayerLightEventListener skyReader;
     protected final LayerLightEventListener blockReader;
     protected final boolean isClientSide;
@@ -78,6 +105,10 @@ public final class StarLightInterface {
         this.lightEngine = lightEngine;
         this.hasBlockLight = hasBlockLight;
         this.hasSkyLight = hasSkyLight;
+        this.chunkLighter = GribCoreConfig.STARLIGHT_PARALLEL_CHUNK_LIGHTING && !this.isClientSide ? new ParallelChunkLighter() : null;
+        if (!this.isClientSide) {
+            LightEngineMetrics.startDumping();
+        }
         this.skyReader = !hasSkyLight ? LayerLightEventListener.DummyLightLayerEventListener.INSTANCE : new LayerLightEventListener() {
 //            @Override
 //            public void checkBlock(final BlockPos blockPos) {
@@ -310,7 +341,7 @@ public final class StarLightInterface {
     }
 
     public boolean hasUpdates() {
-        return !this.lightQueue.isEmpty();
+        return !this.lightQueue.isEmpty() || !this.pendingStorageReleases.isEmpty() || !this.exclusiveTasks.isEmpty();
     }
 
     public Level getWorld() {
@@ -370,7 +401,15 @@ public final class StarLightInterface {
     }
 
     public CompletableFuture<Void> blockChange(final BlockPos pos) {
-        if (this.world == null || pos.getY() < WorldUtil.getMinBlockY(this.world) || pos.getY() > WorldUtil.getMaxBlockY(this.world)) { // empty world
+        return this.blockChange(pos.asLong());
+    }
+
+    /**
+     * Same as {@link #blockChange(BlockPos)}, for a position packed with {@link BlockPos#asLong()}.
+     */
+    public CompletableFuture<Void> blockChange(final long pos) {
+        final int y = BlockPos.getY(pos);
+        if (this.world == null || y < WorldUtil.getMinBlockY(this.world) || y > WorldUtil.getMaxBlockY(this.world)) { // empty world
             return null;
         }
 
@@ -506,148 +545,637 @@ public final class StarLightInterface {
         }
     }
 
+    /**
+     * Starts relighting every chunk within the given chunk radius of the center. Must be called on the main thread.
+     */
+    public RelightJob startRelight(final ChunkPos center, final int radius) {
+        if (this.isClientSide) {
+            throw new IllegalStateException("Cannot relight on the client");
+        }
+        // finished jobs are kept until the next one starts, so their results can still be queried
+        this.relightJobs.removeIf(RelightJob::isDone);
+        final RelightJob job = new RelightJob(this, (ServerLevel)this.world, center, radius);
+        this.relightJobs.add(job);
+        return job;
+    }
+
+    public List<RelightJob> getRelightJobs() {
+        return this.relightJobs;
+    }
+
+    public void tickRelightJobs() {
+        for (int i = 0, len = this.relightJobs.size(); i < len; ++i) {
+            this.relightJobs.get(i).tick();
+        }
+    }
+
+    public void queueExclusiveTask(final Runnable task) {
+        this.exclusiveTasks.add(task);
+    }
+
     public void scheduleChunkLight(final ChunkPos pos, final Runnable run) {
         this.lightQueue.queueChunkLighting(pos, run);
     }
 
+    /**
+     * Runs the initial lighting of a generated chunk on the chunk lighting workers, if enabled.
+     * @return {@code false} if the task was not accepted and has to be scheduled with {@link #scheduleChunkLight}
+     */
+    public boolean scheduleChunkLightParallel(final ChunkPos pos, final Runnable run) {
+        if (this.chunkLighter == null) {
+            return false;
+        }
+
+        this.chunkLighter.submit(CoordinateUtils.getChunkKey(pos), run);
+        return true;
+    }
+
+    public ParallelChunkLighter getChunkLighter() {
+        return this.chunkLighter;
+    }
+
     public void removeChunkTasks(final ChunkPos pos) {
         this.lightQueue.removeChunk(pos);
     }
 
+    public void releaseChunkStorage(final ChunkAccess chunk) {
+        if (!SWMRNibbleArray.POOLED_STORAGE || this.isClientSide) {
+            return;
+        }
+
+        final SWMRNibbleArray[] blockNibbles = ((ExtendedChunk)chunk).getBlockNibbles();
+        final SWMRNibbleArray[] skyNibbles = ((ExtendedChunk)chunk).getSkyNibbles();
+        if (blockNibbles != null) {
+            this.pendingStorageReleases.add(blockNibbles);
+        }
+        if (skyNibbles != null) {
+            this.pendingStorageReleases.add(skyNibbles);
+        }
+    }
+
+    protected void releasePendingStorage() {
+        SWMRNibbleArray[] nibbles;
+        while ((nibbles = this.pendingStorageReleases.poll()) != null) {
+            for (final SWMRNibbleArray nibble : nibbles) {
+                if (nibble != null) {
+                    nibble.release();
+                }
+            }
+        }
+    }
+
     public void propagateChanges() {
+        if (this.chunkLighter == null) {
+            this.propagateChanges0();
+            return;
+        }
+
+        // chunks lit on the workers write to the same light data
+        this.chunkLighter.lockWorld();
+        try {
+            this.propagateChanges0();
+        } finally {
+            this.chunkLighter.unlockWorld();
+        }
+    }
+
+    protected final void propagateChanges0() {
+        this.releasePendingStorage();
+
+        Runnable exclusiveTask;
+        while ((exclusiveTask = this.exclusiveTasks.poll()) != null) {
+            exclusiveTask.run();
+        }
+
         if (this.lightQueue.isEmpty()) {
             return;
         }
 
+        final long start = LightEngineMetrics.ENABLED ? System.nanoTime() : 0L;
+        final int queueDepth = LightEngineMetrics.ENABLED ? this.lightQueue.size() : 0;
+
+        final int drained;
+        if (GribCoreConfig.STARLIGHT_PARALLEL_PROPAGATION && !this.isClientSide) {
+            drained = this.propagateChangesParallel();
+        } else {
+            drained = this.propagateChangesSerial();
+        }
+
+        if (LightEngineMetrics.ENABLED) {
+            LightEngineMetrics.recordPropagateChanges(start, queueDepth, drained);
+        }
+    }
+
+    // rets the number of tasks drained
+    protected final int propagateChangesSerial() {
         final SkyStarLightEngine skyEngine = this.getSkyLightEngine();
         final BlockStarLightEngine blockEngine = this.getBlockLightEngine();
 
+        int drained = 0;
         try {
-            LightQueue.ChunkTasks task;
-            while ((task = this.lightQueue.removeFirstTask()) != null) {
-                if (task.lightTasks != null) {
-                    for (final Runnable run : task.lightTasks) {
-                        run.run();
+            if (GribCoreConfig.STARLIGHT_CHUNK_WINDOW_REUSE) {
+                final List<LightQueue.ChunkTasks> tasks = new ArrayList<>();
+                // tasks queued while we are propagating are picked up by the next pass
+                while (this.lightQueue.removeAllTasks(tasks) != 0) {
+                    // the drain can last long enough for chunks to be unloaded and loaded again, so chunks are only
+                    // retained within a batch
+                    setRetainChunks(skyEngine, blockEngine, true);
+                    for (int i = 0, len = tasks.size(); i < len; ++i) {
+                        this.propagateTask(tasks.get(i), skyEngine, blockEngine);
                     }
+                    setRetainChunks(skyEngine, blockEngine, false);
+                    drained += tasks.size();
+                    tasks.clear();
+                }
+            } else {
+                LightQueue.ChunkTasks task;
+                while ((task = this.lightQueue.removeFirstTask()) != null) {
+                    this.propagateTask(task, skyEngine, blockEngine);
+                    ++drained;
                 }
+            }
+        } finally {
+            setRetainChunks(skyEngine, blockEngine, false);
+            this.releaseSkyLightEngine(skyEngine);
+            this.releaseBlockLightEngine(blockEngine);
+        }
 
-                final long coordinate = task.chunkCoordinate;
-                final int chunkX = CoordinateUtils.getChunkX(coordinate);
-                final int chunkZ = CoordinateUtils.getChunkZ(coordinate);
+        return drained;
+    }
 
-                final Set<BlockPos> positions = task.changedPositions;
-                final Boolean[] sectionChanges = task.changedSectionSet;
+    protected static void setRetainChunks(final SkyStarLightEngine skyEngine, final BlockStarLightEngine blockEngine,
+                                          final boolean retainChunks) {
+        if (skyEngine != null) {
+            skyEngine.setRetainChunks(retainChunks);
+        }
+        if (blockEngine != null) {
+            blockEngine.setRetainChunks(retainChunks);
+        }
+    }
 
-                if (skyEngine != null && (!positions.isEmpty() || sectionChanges != null)) {
-                    skyEngine.blocksChangedInChunk(this.lightAccess, chunkX, chunkZ, positions, sectionChanges);
-                }
-                if (blockEngine != null && (!positions.isEmpty() || sectionChanges != null)) {
-                    blockEngine.blocksChangedInChunk(this.lightAccess, chunkX, chunkZ, positions, sectionChanges);
-                }
+    protected static void clearRetainedChunks(final SkyStarLightEngine skyEngine, final BlockStarLightEngine blockEngine) {
+        if (skyEngine != null) {
+            skyEngine.clearRetainedChunks();
+        }
+        if (blockEngine != null) {
+            blockEngine.clearRetainedChunks();
+        }
+    }
 
-                if (skyEngine != null && task.queuedEdgeChecksSky != null) {
-                    skyEngine.checkChunkEdges(this.lightAccess, chunkX, chunkZ, task.queuedEdgeChecksSky);
-                }
-                if (blockEngine != null && task.queuedEdgeChecksBlock != null) {
-                    blockEngine.checkChunkEdges(this.lightAccess, chunkX, chunkZ, task.queuedEdgeChecksBlock);
+    protected final void propagateTask(final LightQueue.ChunkTasks task, final SkyStarLightEngine skyEngine,
+                                       final BlockStarLightEngine blockEngine) {
+        if (task.lightTasks != null) {
+            for (final Runnable run : task.lightTasks) {
+                run.run();
+            }
+            // lighting a chunk is part of loading it, the chunks retained so far may have been replaced meanwhile
+            clearRetainedChunks(skyEngine, blockEngine);
+        }
+
+        final long coordinate = task.chunkCoordinate;
+        final int chunkX = CoordinateUtils.getChunkX(coordinate);
+        final int chunkZ = CoordinateUtils.getChunkZ(coordinate);
+
+        final LongSet positions = task.changedPositions;
+        final Boolean[] sectionChanges = task.changedSectionSet;
+
+        if (skyEngine != null && (!positions.isEmpty() || sectionChanges != null)) {
+            skyEngine.blocksChangedInChunk(this.lightAccess, chunkX, chunkZ, positions, sectionChanges);
+        }
+        if (blockEngine != null && (!positions.isEmpty() || sectionChanges != null)) {
+            blockEngine.blocksChangedInChunk(this.lightAccess, chunkX, chunkZ, positions, sectionChanges);
+        }
+
+        if (skyEngine != null && task.queuedEdgeChecksSky != null) {
+            skyEngine.checkChunkEdges(this.lightAccess, chunkX, chunkZ, task.queuedEdgeChecksSky);
+        }
+        if (blockEngine != null && task.queuedEdgeChecksBlock != null) {
+            blockEngine.checkChunkEdges(this.lightAccess, chunkX, chunkZ, task.queuedEdgeChecksBlock);
+        }
+
+        task.onComplete.complete(null);
+    }
+
+    // a task reads chunks in a 2 radius and writes chunks in a 1 radius around its center, so two tasks can only
+    // observe each other's writes if their centers are at most 1 + 2 chunks apart
+    protected static final int REGION_SEPARATION = 1 + 2;
+
+    // rets the number of tasks drained
+    protected final int propagateChangesParallel() {
+        final List<LightQueue.ChunkTasks> tasks = new ArrayList<>();
+        int drained = 0;
+
+        // tasks queued while we are propagating are picked up by the next pass, just like the serial loop would
+        while (!this.lightQueue.isEmpty()) {
+            drained += this.lightQueue.removeAllTasks(tasks);
+
+            final List<List<LightQueue.ChunkTasks>> regions = splitIntoRegions(tasks);
+            tasks.clear();
+
+            if (regions.size() == 1) {
+                this.propagateRegion(regions.get(0));
+                continue;
+            }
+
+            final CompletableFuture<?>[] futures = new CompletableFuture<?>[regions.size() - 1];
+            for (int i = 1, len = regions.size(); i < len; ++i) {
+                final List<LightQueue.ChunkTasks> region = regions.get(i);
+                futures[i - 1] = CompletableFuture.runAsync(() -> {
+                    this.propagateRegion(region);
+                }, PropagationWorkers.EXECUTOR);
+            }
+
+            // the calling thread takes the first region instead of idling
+            Throwable thrown = null;
+            try {
+                this.propagateRegion(regions.get(0));
+            } catch (final Throwable throwable) {
+                thrown = throwable;
+            }
+
+            for (final CompletableFuture<?> future : futures) {
+                try {
+                    future.join();
+                } catch (final CompletionException ex) {
+                    if (thrown == null) {
+                        thrown = ex.getCause();
+                    } else {
+                        thrown.addSuppressed(ex.getCause());
+                    }
                 }
+            }
 
-                task.onComplete.complete(null);
+            if (thrown instanceof RuntimeException) {
+                throw (RuntimeException)thrown;
+            } else if (thrown instanceof Error) {
+                throw (Error)thrown;
+            } else if (thrown != null) {
+                throw new RuntimeException(thrown);
+            }
+        }
+
+        return drained;
+    }
+
+    // the light tasks of the region and the callbacks of its onComplete futures run on the calling thread, which is a
+    // propagation worker for every region but the first
+    protected final void propagateRegion(final List<LightQueue.ChunkTasks> region) {
+        final SkyStarLightEngine skyEngine = this.getSkyLightEngine();
+        final BlockStarLightEngine blockEngine = this.getBlockLightEngine();
+
+        try {
+            if (GribCoreConfig.STARLIGHT_CHUNK_WINDOW_REUSE) {
+                setRetainChunks(skyEngine, blockEngine, true);
+            }
+            for (int i = 0, len = region.size(); i < len; ++i) {
+                this.propagateTask(region.get(i), skyEngine, blockEngine);
             }
         } finally {
+            setRetainChunks(skyEngine, blockEngine, false);
             this.releaseSkyLightEngine(skyEngine);
             this.releaseBlockLightEngine(blockEngine);
         }
     }
 
+    // groups the tasks so that no task in one region is within REGION_SEPARATION of a task in another region. regions
+    // therefore never read or write the same chunks, and since every region keeps the queue order of its tasks the
+    // result is identical to propagating all tasks serially.
+    protected static List<List<LightQueue.ChunkTasks>> splitIntoRegions(final List<LightQueue.ChunkTasks> tasks) {
+        final int size = tasks.size();
+        final int[] parents = new int[size];
+
+        // cells are REGION_SEPARATION + 1 wide, so any conflicting task lies in the same or an adjacent cell
+        final Long2ObjectOpenHashMap<IntArrayList> cells = new Long2ObjectOpenHashMap<>();
+
+        for (int i = 0; i < size; ++i) {
+            parents[i] = i;
+
+            final long coordinate = tasks.get(i).chunkCoordinate;
+            final int chunkX = CoordinateUtils.getChunkX(coordinate);
+            final int chunkZ = CoordinateUtils.getChunkZ(coordinate);
+            final int cellX = Math.floorDiv(chunkX, REGION_SEPARATION + 1);
+            final int cellZ = Math.floorDiv(chunkZ, REGION_SEPARATION + 1);
+
+            for (int dz = -1; dz <= 1; ++dz) {
+                for (int dx = -1; dx <= 1; ++dx) {
+                    final IntArrayList cell = cells.get(CoordinateUtils.getChunkKey(cellX + dx, cellZ + dz));
+                    if (cell == null) {
+                        continue;
+                    }
+                    for (int k = 0, len = cell.size(); k < len; ++k) {
+                        final int other = cell.getInt(k);
+                        final long otherCoordinate = tasks.get(other).chunkCoordinate;
+                        final int distance = Math.max(
+                                IntegerUtil.branchlessAbs(CoordinateUtils.getChunkX(otherCoordinate) - chunkX),
+                                IntegerUtil.branchlessAbs(CoordinateUtils.getChunkZ(otherCoordinate) - chunkZ)
+                        );
+                        if (distance <= REGION_SEPARATION) {
+                            union(parents, i, other);
+                        }
+                    }
+                }
+            }
+
+            cells.computeIfAbsent(CoordinateUtils.getChunkKey(cellX, cellZ), (final long key) -> new IntArrayList()).add(i);
+        }
+
+        final Int2ObjectOpenHashMap<List<LightQueue.ChunkTasks>> byRoot = new Int2ObjectOpenHashMap<>();
+        final List<List<LightQueue.ChunkTasks>> ret = new ArrayList<>();
+        for (int i = 0; i < size; ++i) {
+            final int root = find(parents, i);
+            List<LightQueue.ChunkTasks> region = byRoot.get(root);
+            if (region == null) {
+                byRoot.put(root, region = new ArrayList<>());
+                ret.add(region);
+            }
+            region.add(tasks.get(i));
+        }
+
+        return ret;
+    }
+
+    private static int find(final int[] parents, int index) {
+        while (parents[index] != index) {
+            index = parents[index] = parents[parents[index]];
+        }
+        return index;
+    }
+
+    private static void union(final int[] parents, final int a, final int b) {
+        final int rootA = find(parents, a);
+        final int rootB = find(parents, b);
+        if (rootA != rootB) {
+            // keep the lowest index as the root, it does not matter for correctness but keeps regions stable
+            if (rootA < rootB) {
+                parents[rootB] = rootA;
+            } else {
+                parents[rootA] = rootB;
+            }
+        }
+    }
+
+    protected static final class PropagationWorkers {
+
+        private static final AtomicInteger THREAD_ID = new AtomicInteger();
+
+        // lazily created by the first parallel propagation, as most servers never enable it
+        static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(GribCoreConfig.STARLIGHT_PROPAGATION_THREADS, (final Runnable run) -> {
+            final Thread thread = new Thread(run);
+            thread.setName("Starlight Propagation Worker #" + THREAD_ID.getAndIncrement());
+            thread.setDaemon(true);
+            thread.setUncaughtExceptionHandler((final Thread t, final Throwable thr) -> {
+                LOGGER.error("Uncaught exception in thread " + t.getName(), thr);
+            });
+            return thread;
+        });
+
+        private PropagationWorkers() {}
+    }
+
+    public int getLightQueueSize() {
+        return this.lightQueue.size();
+    }
+
+    public long getLightQueueLockAcquisitions() {
+        return this.lightQueue.lockAcquisitions.sum();
+    }
+
+    public long getLightQueueLockContentions() {
+        return this.lightQueue.lockContentions.sum();
+    }
+
+    // the queue is split into lock stripes keyed by chunk coordinate, so producers only contend when they queue changes
+    // for chunks in the same stripe. the drain order is kept in a lock-free queue, so removeFirstTask only ever holds the
+    // stripe lock of the single task it is removing.
     protected static final class LightQueue {
 
-        protected final Long2ObjectLinkedOpenHashMap<ChunkTasks> chunkTasks = new Long2ObjectLinkedOpenHashMap<>();
+        protected static final int STRIPE_COUNT = 64; // must be a power of two
+
+        protected final Stripe[] stripes = new Stripe[STRIPE_COUNT];
+        // tasks in creation order. tasks removed through removeChunk stay in here and are skipped when drained
+        protected final ConcurrentLinkedQueue<ChunkTasks> order = new ConcurrentLinkedQueue<>();
+        protected final AtomicInteger size = new AtomicInteger();
+
+        protected final LongAdder lockAcquisitions = new LongAdder();
+        protected final LongAdder lockContentions = new LongAdder();
+
         protected final StarLightInterface manager;
 
         public LightQueue(final StarLightInterface manager) {
             this.manager = manager;
+            for (int i = 0; i < this.stripes.length; ++i) {
+                this.stripes[i] = new Stripe();
+            }
         }
 
-        public synchronized boolean isEmpty() {
-            return this.chunkTasks.isEmpty();
+        protected Stripe getStripe(final long chunkCoordinate) {
+            return this.stripes[(int)HashCommon.mix(chunkCoordinate) & (STRIPE_COUNT - 1)];
         }
 
-        public synchronized CompletableFuture<Void> queueBlockChange(final BlockPos pos) {
-            final ChunkTasks tasks = this.chunkTasks.computeIfAbsent(CoordinateUtils.getChunkKey(pos), ChunkTasks::new);
-            tasks.changedPositions.add(pos.immutable());
-            return tasks.onComplete;
+        protected Stripe lockStripe(final long chunkCoordinate) {
+            final Stripe stripe = this.getStripe(chunkCoordinate);
+            this.lockAcquisitions.increment();
+            if (!stripe.lock.tryLock()) {
+                this.lockContentions.increment();
+                stripe.lock.lock();
+            }
+            return stripe;
         }
 
-        public synchronized CompletableFuture<Void> queueSectionChange(final SectionPos pos, final boolean newEmptyValue) {
-            final ChunkTasks tasks = this.chunkTasks.computeIfAbsent(CoordinateUtils.getChunkKey(pos), ChunkTasks::new);
-
-            if (tasks.changedSectionSet == null) {
-                tasks.changedSectionSet = new Boolean[this.manager.maxSection - this.manager.minSection + 1];
+        // must hold the stripe lock
+        protected ChunkTasks getOrCreateTasks(final Stripe stripe, final long chunkCoordinate) {
+            ChunkTasks tasks = stripe.chunkTasks.get(chunkCoordinate);
+            if (tasks == null) {
+                stripe.chunkTasks.put(chunkCoordinate, tasks = new ChunkTasks(chunkCoordinate));
+                this.size.getAndIncrement();
+                this.order.add(tasks);
             }
-            tasks.changedSectionSet[pos.getY() - this.manager.minSection] = Boolean.valueOf(newEmptyValue);
+            return tasks;
+        }
 
-            return tasks.onComplete;
+        public boolean isEmpty() {
+            return this.size.get() == 0;
         }
 
-        public synchronized CompletableFuture<Void> queueChunkLighting(final ChunkPos pos, final Runnable lightTask) {
-            final ChunkTasks tasks = this.chunkTasks.computeIfAbsent(CoordinateUtils.getChunkKey(pos), ChunkTasks::new);
-            if (tasks.lightTasks == null) {
-                tasks.lightTasks = new ArrayList<>();
-            }
-            tasks.lightTasks.add(lightTask);
+        public int size() {
+            return this.size.get();
+        }
 
-            return tasks.onComplete;
+        public CompletableFuture<Void> queueBlockChange(final BlockPos pos) {
+            return this.queueBlockChange(pos.asLong());
         }
 
-        public synchronized CompletableFuture<Void> queueChunkSkylightEdgeCheck(final SectionPos pos, final ShortCollection sections) {
-            final ChunkTasks tasks = this.chunkTasks.computeIfAbsent(CoordinateUtils.getChunkKey(pos), ChunkTasks::new);
+        public CompletableFuture<Void> queueBlockChange(final long pos) {
+            final long key = CoordinateUtils.getChunkKey(BlockPos.getX(pos) >> 4, BlockPos.getZ(pos) >> 4);
+            final Stripe stripe = this.lockStripe(key);
+            try {
+                final ChunkTasks tasks = this.getOrCreateTasks(stripe, key);
+                tasks.changedPositions.add(pos);
+                return tasks.onComplete;
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+
+        public CompletableFuture<Void> queueSectionChange(final SectionPos pos, final boolean newEmptyValue) {
+            final long key = CoordinateUtils.getChunkKey(pos);
+            final Stripe stripe = this.lockStripe(key);
+            try {
+                final ChunkTasks tasks = this.getOrCreateTasks(stripe, key);
 
-            ShortOpenHashSet queuedEdges = tasks.queuedEdgeChecksSky;
-            if (queuedEdges == null) {
-                queuedEdges = tasks.queuedEdgeChecksSky = new ShortOpenHashSet();
+                if (tasks.changedSectionSet == null) {
+                    tasks.changedSectionSet = new Boolean[this.manager.maxSection - this.manager.minSection + 1];
+                }
+                tasks.changedSectionSet[pos.getY() - this.manager.minSection] = Boolean.valueOf(newEmptyValue);
+
+                return tasks.onComplete;
+            } finally {
+                stripe.lock.unlock();
             }
-            queuedEdges.addAll(sections);
+        }
 
-            return tasks.onComplete;
+        public CompletableFuture<Void> queueChunkLighting(final ChunkPos pos, final Runnable lightTask) {
+            final long key = CoordinateUtils.getChunkKey(pos);
+            final Stripe stripe = this.lockStripe(key);
+            try {
+                final ChunkTasks tasks = this.getOrCreateTasks(stripe, key);
+                if (tasks.lightTasks == null) {
+                    tasks.lightTasks = new ArrayList<>();
+                }
+                tasks.lightTasks.add(lightTask);
+
+                return tasks.onComplete;
+            } finally {
+                stripe.lock.unlock();
+            }
         }
 
-        public synchronized CompletableFuture<Void> queueChunkBlocklightEdgeCheck(final SectionPos pos, final ShortCollection sections) {
-            final ChunkTasks tasks = this.chunkTasks.computeIfAbsent(CoordinateUtils.getChunkKey(pos), ChunkTasks::new);
+        public CompletableFuture<Void> queueChunkSkylightEdgeCheck(final SectionPos pos, final ShortCollection sections) {
+            final long key = CoordinateUtils.getChunkKey(pos);
+            final Stripe stripe = this.lockStripe(key);
+            try {
+                final ChunkTasks tasks = this.getOrCreateTasks(stripe, key);
+
+                ShortOpenHashSet queuedEdges = tasks.queuedEdgeChecksSky;
+                if (queuedEdges == null) {
+                    queuedEdges = tasks.queuedEdgeChecksSky = new ShortOpenHashSet();
+                }
+                queuedEdges.addAll(sections);
 
-            ShortOpenHashSet queuedEdges = tasks.queuedEdgeChecksBlock;
-            if (queuedEdges == null) {
-                queuedEdges = tasks.queuedEdgeChecksBlock = new ShortOpenHashSet();
+                return tasks.onComplete;
+            } finally {
+                stripe.lock.unlock();
             }
-            queuedEdges.addAll(sections);
+        }
+
+        public CompletableFuture<Void> queueChunkBlocklightEdgeCheck(final SectionPos pos, final ShortCollection sections) {
+            final long key = CoordinateUtils.getChunkKey(pos);
+            final Stripe stripe = this.lockStripe(key);
+            try {
+                final ChunkTasks tasks = this.getOrCreateTasks(stripe, key);
+
+                ShortOpenHashSet queuedEdges = tasks.queuedEdgeChecksBlock;
+                if (queuedEdges == null) {
+                    queuedEdges = tasks.queuedEdgeChecksBlock = new ShortOpenHashSet();
+                }
+                queuedEdges.addAll(sections);
 
-            return tasks.onComplete;
+                return tasks.onComplete;
+            } finally {
+                stripe.lock.unlock();
+            }
         }
 
         public void removeChunk(final ChunkPos pos) {
+            final long key = CoordinateUtils.getChunkKey(pos);
             final ChunkTasks tasks;
-            synchronized (this) {
-                tasks = this.chunkTasks.remove(CoordinateUtils.getChunkKey(pos));
+            final Stripe stripe = this.lockStripe(key);
+            try {
+                tasks = stripe.chunkTasks.remove(key);
+                if (tasks != null) {
+                    tasks.removed = true;
+                    this.size.getAndDecrement();
+                }
+            } finally {
+                stripe.lock.unlock();
             }
             if (tasks != null) {
                 tasks.onComplete.complete(null);
             }
         }
 
-        public synchronized ChunkTasks removeFirstTask() {
-            if (this.chunkTasks.isEmpty()) {
-                return null;
+        public ChunkTasks removeFirstTask() {
+            ChunkTasks tasks;
+            while ((tasks = this.order.poll()) != null) {
+                final Stripe stripe = this.lockStripe(tasks.chunkCoordinate);
+                try {
+                    if (tasks.removed) {
+                        // removed by removeChunk
+                        continue;
+                    }
+                    // once removed from the stripe, producers will create a new task for this chunk. releasing the
+                    // lock publishes all of the changes made to this task
+                    stripe.chunkTasks.remove(tasks.chunkCoordinate);
+                    tasks.removed = true;
+                    this.size.getAndDecrement();
+                    return tasks;
+                } finally {
+                    stripe.lock.unlock();
+                }
+            }
+            return null;
+        }
+
+        // rets the number of tasks removed. if enabled, the tasks are sorted in spatial order so that consecutive
+        // tasks are likely to be neighbours, otherwise they are in queue order
+        public int removeAllTasks(final List<ChunkTasks> into) {
+            final int start = into.size();
+            ChunkTasks tasks;
+            while ((tasks = this.removeFirstTask()) != null) {
+                into.add(tasks);
+            }
+
+            final int removed = into.size() - start;
+            if (GribCoreConfig.STARLIGHT_CHUNK_WINDOW_REUSE && removed > 1) {
+                into.subList(start, into.size()).sort((final ChunkTasks t1, final ChunkTasks t2) -> {
+                    return Long.compareUnsigned(getSpatialKey(t1.chunkCoordinate), getSpatialKey(t2.chunkCoordinate));
+                });
             }
-            return this.chunkTasks.removeFirst();
+
+            return removed;
+        }
+
+        // interleaves the bits of the chunk x and z (z order curve)
+        protected static long getSpatialKey(final long chunkCoordinate) {
+            return spreadBits(CoordinateUtils.getChunkX(chunkCoordinate) ^ Integer.MIN_VALUE)
+                    | (spreadBits(CoordinateUtils.getChunkZ(chunkCoordinate) ^ Integer.MIN_VALUE) << 1);
+        }
+
+        private static long spreadBits(final int value) {
+            long ret = value & 0xFFFFFFFFL;
+            ret = (ret | (ret << 16)) & 0x0000FFFF0000FFFFL;
+            ret = (ret | (ret << 8)) & 0x00FF00FF00FF00FFL;
+            ret = (ret | (ret << 4)) & 0x0F0F0F0F0F0F0F0FL;
+            ret = (ret | (ret << 2)) & 0x3333333333333333L;
+            ret = (ret | (ret << 1)) & 0x5555555555555555L;
+            return ret;
+        }
+
+        protected static final class Stripe {
+
+            public final ReentrantLock lock = new ReentrantLock();
+            public final Long2ObjectOpenHashMap<ChunkTasks> chunkTasks = new Long2ObjectOpenHashMap<>();
         }
 
         protected static final class ChunkTasks {
 
-            public final Set<BlockPos> changedPositions = new HashSet<>();
+            public final LongOpenHashSet changedPositions = new LongOpenHashSet();
             public Boolean[] changedSectionSet;
             public ShortOpenHashSet queuedEdgeChecksSky;
             public ShortOpenHashSet queuedEdgeChecksBlock;
             public List<Runnable> lightTasks;
+            // guarded by the stripe lock
+            public boolean removed;
 
             public final CompletableFuture<Void> onComplete = new CompletableFuture<>();
 
@@ -1,5 +1,6 @@
 package gribland.gribcore.starlight.util;
 
+import gribland.gribcore.config.GribCoreConfig;
 import gribland.gribcore.starlight.chunk.ExtendedChunk;
 import gribland.gribcore.starlight.light.SWMRNibbleArray;
 import gribland.gribcore.starlight.light.StarLightEngine;
@@ -12,16 +13,31 @@ import net.minecraft.world.level.chunk.ChunkAccess;
 import net.minecraft.world.level.chunk.ChunkStatus;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import java.util.Arrays;
 
 public final class SaveUtil {
 
     private static final Logger LOGGER = LogManager.getLogger();
 
     private static final int STARLIGHT_LIGHT_VERSION = 7;
+    // same as STARLIGHT_LIGHT_VERSION, but with the light data encoded by encodeCompact under the compact tags
+    private static final int STARLIGHT_COMPACT_LIGHT_VERSION = 8;
 
     private static final String BLOCKLIGHT_STATE_TAG = "starlight.blocklight_state";
     private static final String SKYLIGHT_STATE_TAG = "starlight.skylight_state";
     private static final String STARLIGHT_VERSION_TAG = "starlight.light_version";
+    private static final String BLOCKLIGHT_COMPACT_TAG = "starlight.blocklight_compact";
+    private static final String SKYLIGHT_COMPACT_TAG = "starlight.skylight_compact";
+
+    /*
+     * Compact encoding - the first byte holds the encoding in its upper 4 bits.
+     * Uniform: every nibble has the value in the lower 4 bits of the first byte, nothing else follows.
+     * Run length: followed by pairs of (run length - 1, byte value), covering exactly the whole nibble.
+     * Raw: followed by the nibble data as is, used when run length encoding would be larger.
+     */
+    private static final int COMPACT_UNIFORM = 0;
+    private static final int COMPACT_RUN_LENGTH = 1;
+    private static final int COMPACT_RAW = 2;
 
     public static void saveLightHook(final Level world, final ChunkAccess chunk, final CompoundTag nbt) {
         try {
@@ -40,6 +56,7 @@ public final class SaveUtil {
 
         final int minSection = WorldUtil.getMinLightSection(world);
         final int maxSection = WorldUtil.getMaxLightSection(world);
+        final boolean compact = GribCoreConfig.STARLIGHT_COMPACT_LIGHT_FORMAT;
 
         SWMRNibbleArray[] blockNibbles = ((ExtendedChunk) chunk).getBlockNibbles();
         SWMRNibbleArray[] skyNibbles = ((ExtendedChunk) chunk).getSkyNibbles();
@@ -63,6 +80,8 @@ public final class SaveUtil {
             // strip light data
             sectionStored.remove("BlockLight");
             sectionStored.remove("SkyLight");
+            sectionStored.remove(BLOCKLIGHT_COMPACT_TAG);
+            sectionStored.remove(SKYLIGHT_COMPACT_TAG);
 
             if (!sectionStored.isEmpty()) {
                 sections[k - minSection] = sectionStored;
@@ -89,14 +108,22 @@ public final class SaveUtil {
 
                     if (blockNibble != null) {
                         if (blockNibble.data != null) {
-                            section.putByteArray("BlockLight", blockNibble.data);
+                            if (compact) {
+                                section.putByteArray(BLOCKLIGHT_COMPACT_TAG, encodeCompact(blockNibble.data));
+                            } else {
+                                section.putByteArray("BlockLight", blockNibble.data);
+                            }
                         }
                         section.putInt(BLOCKLIGHT_STATE_TAG, blockNibble.state);
                     }
 
                     if (skyNibble != null) {
                         if (skyNibble.data != null) {
-                            section.putByteArray("SkyLight", skyNibble.data);
+                            if (compact) {
+                                section.putByteArray(SKYLIGHT_COMPACT_TAG, encodeCompact(skyNibble.data));
+                            } else {
+                                section.putByteArray("SkyLight", skyNibble.data);
+                            }
                         }
                         section.putInt(SKYLIGHT_STATE_TAG, skyNibble.state);
                     }
@@ -113,7 +140,7 @@ public final class SaveUtil {
         }
         tag.put("sections", sectionsStored);
         if (lit) {
-            tag.putInt(STARLIGHT_VERSION_TAG, STARLIGHT_LIGHT_VERSION); // only mark as fully lit after we have successfully injected our data
+            tag.putInt(STARLIGHT_VERSION_TAG, compact ? STARLIGHT_COMPACT_LIGHT_VERSION : STARLIGHT_LIGHT_VERSION); // only mark as fully lit after we have successfully injected our data
         }
     }
 
@@ -141,7 +168,10 @@ public final class SaveUtil {
 
 
         // start copy from from the original method
-        boolean lit = tag.get("isLightOn") != null && tag.getInt(STARLIGHT_VERSION_TAG) == STARLIGHT_LIGHT_VERSION;
+        // both versions are always readable, so the compact format can be toggled. anything else is relit
+        final int version = tag.getInt(STARLIGHT_VERSION_TAG);
+        final boolean compact = version == STARLIGHT_COMPACT_LIGHT_VERSION;
+        boolean lit = tag.get("isLightOn") != null && (version == STARLIGHT_LIGHT_VERSION || compact);
         boolean canReadSky = world.dimensionType().hasSkyLight();
         ChunkStatus status = ChunkStatus.byName(tag.getString("Status"));
         if (lit && status.isOrAfter(ChunkStatus.LIGHT)) { // diff - we add the status check here
@@ -151,7 +181,9 @@ public final class SaveUtil {
                 CompoundTag sectionData = sections.getCompound(i);
                 int y = sectionData.getByte("Y");
 
-                if (sectionData.contains("BlockLight", 7)) {
+                if (compact && sectionData.contains(BLOCKLIGHT_COMPACT_TAG, 7)) {
+                    blockNibbles[y - minSection] = new SWMRNibbleArray(decodeCompact(sectionData.getByteArray(BLOCKLIGHT_COMPACT_TAG)), sectionData.getInt(BLOCKLIGHT_STATE_TAG));
+                } else if (!compact && sectionData.contains("BlockLight", 7)) {
                     // this is where our diff is
                     blockNibbles[y - minSection] = new SWMRNibbleArray(sectionData.getByteArray("BlockLight").clone(), sectionData.getInt(BLOCKLIGHT_STATE_TAG)); // clone for data safety
                 } else {
@@ -159,7 +191,9 @@ public final class SaveUtil {
                 }
 
                 if (canReadSky) {
-                    if (sectionData.contains("SkyLight", 7)) {
+                    if (compact && sectionData.contains(SKYLIGHT_COMPACT_TAG, 7)) {
+                        skyNibbles[y - minSection] = new SWMRNibbleArray(decodeCompact(sectionData.getByteArray(SKYLIGHT_COMPACT_TAG)), sectionData.getInt(SKYLIGHT_STATE_TAG));
+                    } else if (!compact && sectionData.contains("SkyLight", 7)) {
                         // we store under the same key so mod programs editing nbt
                         // can still read the data, hopefully.
                         // however, for compatibility we store chunks as unlit so vanilla
@@ -179,6 +213,89 @@ public final class SaveUtil {
         into.setLightCorrect(lit); // now we set lit here, only after we've correctly parsed data
     }
 
+    private static byte[] encodeCompact(final byte[] data) {
+        final byte first = data[0];
+        boolean uniform = ((first >>> 4) & 0xF) == (first & 0xF);
+        for (int i = 1; uniform && i < SWMRNibbleArray.ARRAY_SIZE; ++i) {
+            uniform = data[i] == first;
+        }
+        if (uniform) {
+            return new byte[] { (byte)((COMPACT_UNIFORM << 4) | (first & 0xF)) };
+        }
+
+        // only use run length encoding if it's smaller than the raw data
+        final byte[] runs = new byte[1 + SWMRNibbleArray.ARRAY_SIZE];
+        runs[0] = (byte)(COMPACT_RUN_LENGTH << 4);
+        int length = 1;
+        for (int i = 0; i < SWMRNibbleArray.ARRAY_SIZE;) {
+            final byte value = data[i];
+            int run = 1;
+            while (run < 256 && i + run < SWMRNibbleArray.ARRAY_SIZE && data[i + run] == value) {
+                ++run;
+            }
+
+            if (length + 2 > runs.length) {
+                final byte[] raw = new byte[1 + SWMRNibbleArray.ARRAY_SIZE];
+                raw[0] = (byte)(COMPACT_RAW << 4);
+                System.arraycopy(data, 0, raw, 1, SWMRNibbleArray.ARRAY_SIZE);
+                return raw;
+            }
+
+            runs[length++] = (byte)(run - 1);
+            runs[length++] = value;
+            i += run;
+        }
+
+        return Arrays.copyOf(runs, length);
+    }
+
+    private static byte[] decodeCompact(final byte[] encoded) {
+        if (encoded.length == 0) {
+            throw new IllegalArgumentException("Empty light data");
+        }
+
+        final byte[] ret = new byte[SWMRNibbleArray.ARRAY_SIZE];
+        final int encoding = (encoded[0] >>> 4) & 0xF;
+
+        switch (encoding) {
+            case COMPACT_UNIFORM: {
+                if (encoded.length != 1) {
+                    throw new IllegalArgumentException("Uniform light data of wrong length: " + encoded.length);
+                }
+                final int value = encoded[0] & 0xF;
+                Arrays.fill(ret, (byte)(value | (value << 4)));
+                return ret;
+            }
+            case COMPACT_RUN_LENGTH: {
+                if ((encoded.length & 1) != 1) {
+                    throw new IllegalArgumentException("Run length light data of wrong length: " + encoded.length);
+                }
+                int index = 0;
+                for (int i = 1; i < encoded.length; i += 2) {
+                    final int run = (encoded[i] & 0xFF) + 1;
+                    if (index + run > SWMRNibbleArray.ARRAY_SIZE) {
+                        throw new IllegalArgumentException("Run length light data overflows");
+                    }
+                    Arrays.fill(ret, index, index + run, encoded[i + 1]);
+                    index += run;
+                }
+                if (index != SWMRNibbleArray.ARRAY_SIZE) {
+                    throw new IllegalArgumentException("Run length light data is incomplete: " + index);
+                }
+                return ret;
+            }
+            case COMPACT_RAW: {
+                if (encoded.length != 1 + SWMRNibbleArray.ARRAY_SIZE) {
+                    throw new IllegalArgumentException("Raw light data of wrong length: " + encoded.length);
+                }
+                System.arraycopy(encoded, 1, ret, 0, SWMRNibbleArray.ARRAY_SIZE);
+                return ret;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown light data encoding: " + encoding);
+        }
+    }
+
     private SaveUtil() {}
 
 }
@@ -1,5 +1,6 @@
 package gribland.gribcore;
 
+import gribland.gribcore.command.GribCoreCommands;
 import gribland.gribcore.config.LithiumConfig;
 import net.fabricmc.api.ModInitializer;
 
@@ -11,5 +12,6 @@ public class GribCoreFabric implements ModInitializer {
 //        if (CONFIG == null) {
 //            throw new IllegalStateException("Какая-то ёбаная ошибка. Да и похуй на неё");
 //        }
+        GribCoreCommands.init();
     }
 }
@@ -1,5 +1,6 @@
 package gribland.gribcore.mixin.lithium.ai.nearby_entity_tracking;
 
+import gribland.gribcore.config.GribCoreConfig;
 import gribland.gribcore.entity.tracker.EntityTrackerEngine;
 import gribland.gribcore.entity.tracker.EntityTrackerEngineProvider;
 import net.minecraft.resources.ResourceKey;
@@ -20,7 +21,8 @@ public class WorldMixin implements EntityTrackerEngineProvider {
 
     @Inject(method = "<init>", at = @At("RETURN"))
     private void init(WritableLevelData properties, ResourceKey<Level> registryKey, final DimensionType dimensionType, Supplier<ProfilerFiller> supplier, boolean bl, boolean bl2, long l, CallbackInfo ci) {
-        this.tracker = new EntityTrackerEngine();
+        // Deferred notifications are only flushed by server worlds, see ServerWorldMixin
+        this.tracker = new EntityTrackerEngine(GribCoreConfig.LITHIUM_DEFERRED_ENTITY_TRACKING && !((Level) (Object) this).isClientSide());
     }
 
     @Override
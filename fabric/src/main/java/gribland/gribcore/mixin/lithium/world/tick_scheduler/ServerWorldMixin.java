@@ -1,13 +1,21 @@
 package gribland.gribcore.mixin.lithium.world.tick_scheduler;
 
 import gribland.gribcore.lithium.common.world.scheduler.LithiumServerTickScheduler;
+import gribland.gribcore.lithium.common.world.scheduler.RegionTickExecutor;
+import net.minecraft.core.BlockPos;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.entity.Entity;
 import net.minecraft.world.level.ServerTickList;
 import net.minecraft.world.level.TickNextTickData;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.state.BlockState;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.Redirect;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
 
 import java.util.function.Consumer;
 import java.util.function.Function;
@@ -28,5 +36,48 @@ public abstract class ServerWorldMixin {
     private <T> ServerTickList<T> redirectServerTickSchedulerCtor(ServerLevel world, Predicate<T> invalidPredicate, Function<T, ResourceLocation> idToName, Consumer<TickNextTickData<T>> tickConsumer) {
         return new LithiumServerTickScheduler<>(world, invalidPredicate, idToName, tickConsumer);
     }
-}
 
+    /**
+     * The block events of the world are kept in a single unsynchronized set, so events queued by ticks executing on a
+     * region worker are queued by the server thread instead.
+     */
+    @Inject(method = "blockEvent", at = @At("HEAD"), cancellable = true)
+    private void deferBlockEvent(BlockPos pos, Block block, int type, int data, CallbackInfo ci) {
+        BlockPos immutable = pos.immutable();
+
+        if (RegionTickExecutor.defer(() -> ((ServerLevel) (Object) this).blockEvent(immutable, block, type, data))) {
+            ci.cancel();
+        }
+    }
+
+    /**
+     * Entities spawned by ticks executing on a region worker are added by the server thread, as adding them modifies
+     * the entity maps of the world. The spawn is reported as successful.
+     */
+    @Inject(method = "addFreshEntity", at = @At("HEAD"), cancellable = true)
+    private void deferAddFreshEntity(Entity entity, CallbackInfoReturnable<Boolean> cir) {
+        if (RegionTickExecutor.defer(() -> ((ServerLevel) (Object) this).addFreshEntity(entity))) {
+            cir.setReturnValue(true);
+        }
+    }
+
+    @Inject(method = "addWithUUID", at = @At("HEAD"), cancellable = true)
+    private void deferAddWithUUID(Entity entity, CallbackInfoReturnable<Boolean> cir) {
+        if (RegionTickExecutor.defer(() -> ((ServerLevel) (Object) this).addWithUUID(entity))) {
+            cir.setReturnValue(true);
+        }
+    }
+
+    /**
+     * Block changes made on a region worker update the points of interest on the server thread, as the storage of
+     * points of interest is shared by the whole world.
+     */
+    @Inject(method = "onBlockStateChange", at = @At("HEAD"), cancellable = true)
+    private void deferBlockStateChange(BlockPos pos, BlockState oldState, BlockState newState, CallbackInfo ci) {
+        BlockPos immutable = pos.immutable();
+
+        if (RegionTickExecutor.defer(() -> ((ServerLevel) (Object) this).onBlockStateChange(immutable, oldState, newState))) {
+            ci.cancel();
+        }
+    }
+}
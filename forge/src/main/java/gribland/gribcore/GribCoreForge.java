@@ -1,10 +1,12 @@
 package gribland.gribcore;
 
+import gribland.gribcore.command.GribCoreCommands;
 import net.minecraftforge.fml.common.Mod;
 
 @Mod(Constantum.ModId)
 public class GribCoreForge {
     public GribCoreForge() {
         Constantum.LOGGER.info("GribCore for Forge Started!");
+        GribCoreCommands.init();
     }
 }
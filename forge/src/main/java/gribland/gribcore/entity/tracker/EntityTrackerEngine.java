@@ -2,41 +2,60 @@ package gribland.gribcore.entity.tracker;
 
 import gribland.gribcore.entity.tracker.nearby.NearbyEntityListener;
 import gribland.gribcore.entity.tracker.nearby.NearbyEntityListenerProvider;
+import gribland.gribcore.entity.tracker.nearby.SharedNearbyEntityGroup;
+import gribland.gribcore.lithium.common.util.collections.SmallReferenceSet;
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectMap;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectMaps;
 import it.unimi.dsi.fastutil.objects.Reference2ReferenceOpenHashMap;
-import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
-import net.minecraft.core.BlockPos;
 import net.minecraft.core.SectionPos;
 import net.minecraft.world.entity.LivingEntity;
-import net.minecraft.world.level.levelgen.structure.BoundingBox;
-
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Set;
+import net.minecraft.world.level.ChunkPos;
 
 /**
  * Tracks the entities within a world and provides notifications to listeners when a tracked entity enters or leaves a
  * watched area. This removes the necessity to constantly poll the world for nearby entities each tick and generally
  * provides a sizable boost to performance.
+ *
+ * When notifications are deferred, entities which are added, removed or move between sections are only recorded, and
+ * the listeners are notified of the net change of every entity when {@link #flushPendingMoves()} is called. An entity
+ * which crosses several sections before the next flush is then moved once, from where it was to where it ended up.
  */
 public class EntityTrackerEngine {
-    private final Long2ObjectOpenHashMap<TrackedEntityList> sections;
-    private final Reference2ReferenceOpenHashMap<NearbyEntityListener, List<TrackedEntityList>> sectionsByEntity;
+    // Marks an entity which was not tracked before its first recorded change, or is not tracked after its last one
+    private static final long NO_SECTION = Long.MIN_VALUE;
+
+    // The tracked sections of every chunk which has any, see TrackedEntityColumn
+    private final Long2ObjectOpenHashMap<TrackedEntityColumn> columns;
+    private final Reference2ReferenceOpenHashMap<NearbyEntityListener, ListenerArea> areasByListener;
+
+    // The first shared listener group of every section which has any
+    private final Long2ObjectOpenHashMap<SharedNearbyEntityGroup> sharedGroups;
 
+    private final boolean deferred;
+    private final Reference2ObjectLinkedOpenHashMap<LivingEntity, PendingMove> pendingMoves;
+    private boolean flushing;
 
-    public EntityTrackerEngine() {
-        this.sections = new Long2ObjectOpenHashMap<>();
-        this.sectionsByEntity = new Reference2ReferenceOpenHashMap<>();
+    // Reused as the target area of every listener move
+    private final ListenerArea moveTarget = new ListenerArea(0, 0, 0, 0);
+
+    public EntityTrackerEngine(boolean deferred) {
+        this.columns = new Long2ObjectOpenHashMap<>();
+        this.areasByListener = new Reference2ReferenceOpenHashMap<>();
+        this.sharedGroups = new Long2ObjectOpenHashMap<>();
+        this.deferred = deferred;
+        this.pendingMoves = new Reference2ObjectLinkedOpenHashMap<>();
     }
 
     /**
      * Called when an entity is added to the world.
      */
     public void onEntityAdded(int x, int y, int z, LivingEntity entity) {
-        if (this.addEntity(x, y, z, entity)) {
-            if (entity instanceof NearbyEntityListenerProvider) {
-                this.addListener(x, y, z, ((NearbyEntityListenerProvider) entity).gribcore$getListener());
-            }
+        if (this.deferred) {
+            this.getPendingMove(entity, NO_SECTION).to = encode(x, y, z);
+        } else {
+            this.addEntityAndListener(encode(x, y, z), entity);
         }
     }
 
@@ -44,10 +63,10 @@ public class EntityTrackerEngine {
      * Called when an entity is removed from the world.
      */
     public void onEntityRemoved(int x, int y, int z, LivingEntity entity) {
-        if (this.removeEntity(x, y, z, entity)) {
-            if (entity instanceof NearbyEntityListenerProvider) {
-                this.removeListener(((NearbyEntityListenerProvider) entity).gribcore$getListener());
-            }
+        if (this.deferred) {
+            this.getPendingMove(entity, encode(x, y, z)).to = NO_SECTION;
+        } else {
+            this.removeEntityAndListener(encode(x, y, z), entity);
         }
     }
 
@@ -56,106 +75,235 @@ public class EntityTrackerEngine {
      * removing/adding an entity from chunks each time it moves.
      */
     public void onEntityMoved(int aX, int aY, int aZ, int bX, int bY, int bZ, LivingEntity entity) {
-        if (this.removeEntity(aX, aY, aZ, entity) && this.addEntity(bX, bY, bZ, entity)) {
-            if (entity instanceof NearbyEntityListenerProvider) {
-                this.moveListener(aX, aY, aZ, bX, bY, bZ, ((NearbyEntityListenerProvider) entity).gribcore$getListener());
-            }
+        if (this.deferred) {
+            this.getPendingMove(entity, encode(aX, aY, aZ)).to = encode(bX, bY, bZ);
+        } else {
+            this.moveEntityAndListener(encode(aX, aY, aZ), encode(bX, bY, bZ), entity);
         }
     }
 
-    private boolean addEntity(int x, int y, int z, LivingEntity entity) {
-        return this.getOrCreateList(x, y, z).addTrackedEntity(entity);
+    /**
+     * Delivers the changes recorded since the last flush to the listeners, in the order the entities first changed. This
+     * must be called before listeners are queried. Does nothing if notifications are not deferred.
+     */
+    public void flushPendingMoves() {
+        if (this.pendingMoves.isEmpty() || this.flushing) {
+            return;
+        }
+
+        this.flushing = true;
+
+        try {
+            for (Reference2ObjectMap.Entry<LivingEntity, PendingMove> entry : Reference2ObjectMaps.fastIterable(this.pendingMoves)) {
+                PendingMove move = entry.getValue();
+
+                if (move.from == move.to) {
+                    // The entity ended up where it started
+                    continue;
+                }
+
+                if (move.from == NO_SECTION) {
+                    this.addEntityAndListener(move.to, entry.getKey());
+                } else if (move.to == NO_SECTION) {
+                    this.removeEntityAndListener(move.from, entry.getKey());
+                } else {
+                    this.moveEntityAndListener(move.from, move.to, entry.getKey());
+                }
+            }
+        } finally {
+            this.pendingMoves.clear();
+            this.flushing = false;
+        }
     }
 
-    private boolean removeEntity(int x, int y, int z, LivingEntity entity) {
-        TrackedEntityList list = this.getList(x, y, z);
+    /**
+     * Returns the shared listener group for the given entity class and chunk range around the given section, creating
+     * and registering it if it does not exist yet. The caller becomes a member of the group, and must leave it with
+     * {@link #leaveSharedGroup(SharedNearbyEntityGroup)} once its owner moves to another section.
+     */
+    public SharedNearbyEntityGroup joinSharedGroup(long section, Class<?> clazz, int range) {
+        SharedNearbyEntityGroup first = this.sharedGroups.get(section);
 
-        if (list == null) {
-            return false;
+        for (SharedNearbyEntityGroup group = first; group != null; group = group.getNext()) {
+            if (group.matches(clazz, range)) {
+                group.addMember();
+                return group;
+            }
         }
 
-        return list.removeTrackedEntity(entity);
-    }
+        SharedNearbyEntityGroup group = new SharedNearbyEntityGroup(section, clazz, range);
+        group.setNext(first);
+        group.addMember();
 
-    private void addListener(int x, int y, int z, NearbyEntityListener listener) {
-        int r = listener.getChunkRange();
+        this.sharedGroups.put(section, group);
+        this.addListener(section, group);
 
-        if (r == 0) {
+        return group;
+    }
+
+    /**
+     * Removes a member from the group, and removes the group once it has no members left.
+     */
+    public void leaveSharedGroup(SharedNearbyEntityGroup group) {
+        if (!group.removeMember()) {
             return;
         }
 
-        if (this.sectionsByEntity.containsKey(listener)) {
+        long section = group.getSection();
+        SharedNearbyEntityGroup first = this.sharedGroups.get(section);
+
+        if (first == group) {
+            if (group.getNext() == null) {
+                this.sharedGroups.remove(section);
+            } else {
+                this.sharedGroups.put(section, group.getNext());
+            }
+        } else {
+            SharedNearbyEntityGroup prev = first;
+
+            while (prev.getNext() != group) {
+                prev = prev.getNext();
+            }
 
-            throw new IllegalStateException(errorMessageAlreadyListening(this.sectionsByEntity, listener, SectionPos.of(x, y, z)));
+            prev.setNext(group.getNext());
         }
 
-        int yMin = Math.max(0, y - r);
-        int yMax = Math.min(y + r, 15);
+        this.removeListener(group);
+    }
 
-        List<TrackedEntityList> all = new ArrayList<>((2 * r + 1) * (yMax - yMin + 1) * (2 * r + 1));
+    private PendingMove getPendingMove(LivingEntity entity, long from) {
+        PendingMove move = this.pendingMoves.get(entity);
 
-        for (int x2 = x - r; x2 <= x + r; x2++) {
-            for (int y2 = yMin; y2 <= yMax; y2++) {
-                for (int z2 = z - r; z2 <= z + r; z2++) {
-                    TrackedEntityList list = this.getOrCreateList(x2, y2, z2);
-                    list.addListener(listener);
+        if (move == null) {
+            this.pendingMoves.put(entity, move = new PendingMove(from));
+        }
 
-                    all.add(list);
-                }
+        return move;
+    }
+
+    private void addEntityAndListener(long pos, LivingEntity entity) {
+        if (this.getOrCreateList(pos).addTrackedEntity(entity)) {
+            if (entity instanceof NearbyEntityListenerProvider) {
+                this.addListener(pos, ((NearbyEntityListenerProvider) entity).gribcore$getListener());
             }
         }
+    }
+
+    private void removeEntityAndListener(long pos, LivingEntity entity) {
+        TrackedEntityList list = this.getList(pos);
 
-        this.sectionsByEntity.put(listener, all);
+        if (list != null && list.removeTrackedEntity(entity)) {
+            if (entity instanceof NearbyEntityListenerProvider) {
+                NearbyEntityListener listener = ((NearbyEntityListenerProvider) entity).gribcore$getListener();
+
+                this.removeListener(listener);
+                listener.onOwnerSectionChanged(this);
+            }
+        }
     }
 
-    private void removeListener(NearbyEntityListener listener) {
+    private void moveEntityAndListener(long from, long to, LivingEntity entity) {
+        if (from == to) {
+            return;
+        }
+
+        TrackedEntityList fromList = this.getList(from);
+
+        if (fromList == null || !fromList.moveTrackedEntity(entity, this.getOrCreateList(to))) {
+            // The entity was not tracked where it came from, so treat it like a newly added entity
+            this.addEntityAndListener(to, entity);
+            return;
+        }
+
+        if (entity instanceof NearbyEntityListenerProvider) {
+            NearbyEntityListener listener = ((NearbyEntityListenerProvider) entity).gribcore$getListener();
+
+            this.moveListener(to, listener);
+            listener.onOwnerSectionChanged(this);
+        }
+    }
+
+    private void addListener(long pos, NearbyEntityListener listener) {
         int r = listener.getChunkRange();
 
         if (r == 0) {
             return;
         }
 
-        List<TrackedEntityList> all = this.sectionsByEntity.remove(listener);
+        if (this.areasByListener.containsKey(listener)) {
+            throw new IllegalStateException(errorMessageAlreadyListening(this.areasByListener, listener, SectionPos.of(pos)));
+        }
 
-        if (all != null) {
-            for (TrackedEntityList list : all) {
-                list.removeListener(listener);
-            }
-        } else {
+        ListenerArea area = new ListenerArea(SectionPos.x(pos), SectionPos.y(pos), SectionPos.z(pos), r);
+
+        this.updateListenerBox(area.getMinX(), area.getMinY(), area.getMinZ(), area.getMaxX(), area.getMaxY(), area.getMaxZ(), listener, true);
+        this.areasByListener.put(listener, area);
+    }
+
+    private void removeListener(NearbyEntityListener listener) {
+        ListenerArea area = this.areasByListener.remove(listener);
+
+        if (area != null) {
+            this.updateListenerBox(area.getMinX(), area.getMinY(), area.getMinZ(), area.getMaxX(), area.getMaxY(), area.getMaxZ(), listener, false);
+        } else if (listener.getChunkRange() != 0) {
             throw new IllegalArgumentException("Entity listener not tracked:" + listener);
         }
     }
 
     // Faster implementation which avoids removing from/adding to every list twice on an entity move event
-    private void moveListener(int aX, int aY, int aZ, int bX, int bY, int bZ, NearbyEntityListener listener) {
-        int radius = listener.getChunkRange();
+    private void moveListener(long to, NearbyEntityListener listener) {
+        ListenerArea before = this.areasByListener.get(listener);
 
-        if (radius == 0) {
+        if (before == null) {
             return;
         }
 
-        BoundingBox before = new BoundingBox(aX - radius, aY - radius, aZ - radius, aX + radius, aY + radius, aZ + radius);
-        BoundingBox after = new BoundingBox(aX - radius, aY - radius, aZ - radius, bX + radius, bY + radius, bZ + radius);
+        ListenerArea after = this.moveTarget;
+        after.set(SectionPos.x(to), SectionPos.y(to), SectionPos.z(to), before.range);
 
-        BoundingBox merged = new BoundingBox(before);
-        merged.expand(after);
+        // The listener has left the sections which are only within the old area, and entered the ones only within the new area
+        this.updateListenerDifference(before, after, listener, false);
+        this.updateListenerDifference(after, before, listener, true);
 
-        BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+        before.set(after.x, after.y, after.z, after.range);
+    }
 
-        for (int x = merged.x0; x <= merged.x1; x++) {
-            for (int y = merged.y0; y <= merged.y1; y++) {
-                for (int z = merged.z0; z <= merged.y1; z++) {
-                    pos.set(x, y, z);
+    /**
+     * Adds the listener to or removes it from every section within area {@code a} which is not also within area
+     * {@code b}. The difference of two boxes is split into at most six boxes, so no section within both areas is
+     * visited: first the slabs of {@code a} beyond {@code b} on the x axis, then the slabs beyond {@code b} on the y axis
+     * within the overlap on the x axis, and finally the slabs on the z axis within the overlap on both other axes.
+     */
+    private void updateListenerDifference(ListenerArea a, ListenerArea b, NearbyEntityListener listener, boolean add) {
+        int ax0 = a.getMinX(), ay0 = a.getMinY(), az0 = a.getMinZ();
+        int ax1 = a.getMaxX(), ay1 = a.getMaxY(), az1 = a.getMaxZ();
+        int bx0 = b.getMinX(), by0 = b.getMinY(), bz0 = b.getMinZ();
+        int bx1 = b.getMaxX(), by1 = b.getMaxY(), bz1 = b.getMaxZ();
 
-                    boolean leaving = before.isInside(pos);
-                    boolean entering = after.isInside(pos);
+        this.updateListenerBox(ax0, ay0, az0, Math.min(ax1, bx0 - 1), ay1, az1, listener, add);
+        this.updateListenerBox(Math.max(ax0, bx1 + 1), ay0, az0, ax1, ay1, az1, listener, add);
 
-                    // Nothing to change
-                    if (leaving == entering) {
-                        continue;
-                    }
+        int x0 = Math.max(ax0, bx0);
+        int x1 = Math.min(ax1, bx1);
 
-                    if (leaving) {
+        this.updateListenerBox(x0, ay0, az0, x1, Math.min(ay1, by0 - 1), az1, listener, add);
+        this.updateListenerBox(x0, Math.max(ay0, by1 + 1), az0, x1, ay1, az1, listener, add);
+
+        int y0 = Math.max(ay0, by0);
+        int y1 = Math.min(ay1, by1);
+
+        this.updateListenerBox(x0, y0, az0, x1, y1, Math.min(az1, bz0 - 1), listener, add);
+        this.updateListenerBox(x0, y0, Math.max(az0, bz1 + 1), x1, y1, az1, listener, add);
+    }
+
+    private void updateListenerBox(int x0, int y0, int z0, int x1, int y1, int z1, NearbyEntityListener listener, boolean add) {
+        for (int x = x0; x <= x1; x++) {
+            for (int y = y0; y <= y1; y++) {
+                for (int z = z0; z <= z1; z++) {
+                    if (add) {
+                        // The listener has entered the chunk
+                        this.getOrCreateList(encode(x, y, z)).addListener(listener);
+                    } else {
                         // The listener has left the chunk
                         TrackedEntityList list = this.getList(x, y, z);
 
@@ -164,45 +312,113 @@ public class EntityTrackerEngine {
                         }
 
                         list.removeListener(listener);
-                    } else {
-                        // The listener has entered the chunk
-                        TrackedEntityList list = this.getOrCreateList(x, y, z);
-                        list.addListener(listener);
                     }
                 }
             }
         }
     }
 
-    private TrackedEntityList getOrCreateList(int x, int y, int z) {
-        return this.sections.computeIfAbsent(encode(x, y, z), TrackedEntityList::new);
+    private TrackedEntityList getOrCreateList(long pos) {
+        long key = ChunkPos.asLong(SectionPos.x(pos), SectionPos.z(pos));
+        TrackedEntityColumn column = this.columns.get(key);
+
+        if (column == null) {
+            this.columns.put(key, column = new TrackedEntityColumn(key));
+        }
+
+        return column.getOrCreateList(SectionPos.y(pos));
+    }
+
+    private TrackedEntityList getList(long pos) {
+        TrackedEntityColumn column = this.columns.get(ChunkPos.asLong(SectionPos.x(pos), SectionPos.z(pos)));
+
+        return column == null ? null : column.getList(SectionPos.y(pos));
     }
 
     private TrackedEntityList getList(int x, int y, int z) {
-        return this.sections.get(encode(x, y, z));
+        TrackedEntityColumn column = this.columns.get(ChunkPos.asLong(x, z));
+
+        return column == null ? null : column.getList(y);
     }
 
     private static long encode(int x, int y, int z) {
         return SectionPos.asLong(x, y, z);
     }
 
-    private static SectionPos decode(long xyz) {
-        return SectionPos.of(xyz);
-    }
-
-    private class TrackedEntityList {
-        private final Set<LivingEntity> entities = new ReferenceOpenHashSet<>();
-        private final Set<NearbyEntityListener> listeners = new ReferenceOpenHashSet<>();
+    /**
+     * The lists of the sections of a chunk, indexed by their y coordinate. The array only spans from the lowest to the
+     * highest section which had a list, so a column of a mob farm on a single floor holds a single slot.
+     */
+    private class TrackedEntityColumn {
+        private TrackedEntityList[] lists;
+        private int minY;
+        private int count;
 
         private final long key;
 
-        private TrackedEntityList(long key) {
+        private TrackedEntityColumn(long key) {
             this.key = key;
         }
 
+        private TrackedEntityList getList(int y) {
+            int index = y - this.minY;
+
+            return index >= 0 && index < this.lists.length ? this.lists[index] : null;
+        }
+
+        private TrackedEntityList getOrCreateList(int y) {
+            if (this.lists == null) {
+                this.lists = new TrackedEntityList[1];
+                this.minY = y;
+            } else if (y < this.minY || y >= this.minY + this.lists.length) {
+                int minY = Math.min(this.minY, y);
+                int maxY = Math.max(this.minY + this.lists.length - 1, y);
+
+                TrackedEntityList[] lists = new TrackedEntityList[maxY - minY + 1];
+                System.arraycopy(this.lists, 0, lists, this.minY - minY, this.lists.length);
+
+                this.lists = lists;
+                this.minY = minY;
+            }
+
+            TrackedEntityList list = this.lists[y - this.minY];
+
+            if (list == null) {
+                this.lists[y - this.minY] = list = new TrackedEntityList(this, y);
+                this.count++;
+            }
+
+            return list;
+        }
+
+        private void removeList(int y) {
+            this.lists[y - this.minY] = null;
+
+            if (--this.count == 0) {
+                EntityTrackerEngine.this.columns.remove(this.key);
+            }
+        }
+    }
+
+    private static class TrackedEntityList {
+        private final SmallReferenceSet<LivingEntity> entities = new SmallReferenceSet<>();
+        private final SmallReferenceSet<NearbyEntityListener> listeners = new SmallReferenceSet<>();
+
+        private final TrackedEntityColumn column;
+        private final int y;
+
+        private TrackedEntityList(TrackedEntityColumn column, int y) {
+            this.column = column;
+            this.y = y;
+        }
+
         public void addListener(NearbyEntityListener listener) {
-            for (LivingEntity entity : this.entities) {
-                listener.onEntityEnteredRange(entity);
+            for (int i = 0; i < this.entities.getSlotCount(); i++) {
+                LivingEntity entity = this.entities.getSlot(i);
+
+                if (entity != null) {
+                    listener.onEntityEnteredRange(entity);
+                }
             }
 
             this.listeners.add(listener);
@@ -210,8 +426,12 @@ public class EntityTrackerEngine {
 
         public void removeListener(NearbyEntityListener listener) {
             if (this.listeners.remove(listener)) {
-                for (LivingEntity entity : this.entities) {
-                    listener.onEntityLeftRange(entity);
+                for (int i = 0; i < this.entities.getSlotCount(); i++) {
+                    LivingEntity entity = this.entities.getSlot(i);
+
+                    if (entity != null) {
+                        listener.onEntityLeftRange(entity);
+                    }
                 }
 
                 this.checkEmpty();
@@ -219,8 +439,12 @@ public class EntityTrackerEngine {
         }
 
         public boolean addTrackedEntity(LivingEntity entity) {
-            for (NearbyEntityListener listener : this.listeners) {
-                listener.onEntityEnteredRange(entity);
+            for (int i = 0; i < this.listeners.getSlotCount(); i++) {
+                NearbyEntityListener listener = this.listeners.getSlot(i);
+
+                if (listener != null) {
+                    listener.onEntityEnteredRange(entity);
+                }
             }
 
             return this.entities.add(entity);
@@ -230,8 +454,12 @@ public class EntityTrackerEngine {
             boolean ret = this.entities.remove(entity);
 
             if (ret) {
-                for (NearbyEntityListener listener : this.listeners) {
-                    listener.onEntityLeftRange(entity);
+                for (int i = 0; i < this.listeners.getSlotCount(); i++) {
+                    NearbyEntityListener listener = this.listeners.getSlot(i);
+
+                    if (listener != null) {
+                        listener.onEntityLeftRange(entity);
+                    }
                 }
 
                 this.checkEmpty();
@@ -240,32 +468,122 @@ public class EntityTrackerEngine {
             return ret;
         }
 
+        /**
+         * Moves a tracked entity into the given list. Listeners of both lists are only notified of the move, as the
+         * entity stays within their range.
+         */
+        public boolean moveTrackedEntity(LivingEntity entity, TrackedEntityList dest) {
+            if (!this.entities.remove(entity)) {
+                return false;
+            }
+
+            for (int i = 0; i < this.listeners.getSlotCount(); i++) {
+                NearbyEntityListener listener = this.listeners.getSlot(i);
+
+                if (listener == null) {
+                    continue;
+                }
+
+                if (dest.listeners.contains(listener)) {
+                    listener.onEntityMovedInRange(entity);
+                } else {
+                    listener.onEntityLeftRange(entity);
+                }
+            }
+
+            for (int i = 0; i < dest.listeners.getSlotCount(); i++) {
+                NearbyEntityListener listener = dest.listeners.getSlot(i);
+
+                if (listener != null && !this.listeners.contains(listener)) {
+                    listener.onEntityEnteredRange(entity);
+                }
+            }
+
+            dest.entities.add(entity);
+
+            this.checkEmpty();
+
+            return true;
+        }
+
         private void checkEmpty() {
             if (this.entities.isEmpty() && this.listeners.isEmpty()) {
-                EntityTrackerEngine.this.sections.remove(this.key);
+                this.column.removeList(this.y);
             }
         }
     }
 
+    /**
+     * The sections a listener is added to. The range is kept from when the listener was added, so the listener is
+     * removed from the same sections even if its range changed in the meantime.
+     */
+    private static class ListenerArea {
+        private int x, y, z;
+        private int range;
+
+        private ListenerArea(int x, int y, int z, int range) {
+            this.set(x, y, z, range);
+        }
+
+        void set(int x, int y, int z, int range) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.range = range;
+        }
+
+        int getMinX() {
+            return this.x - this.range;
+        }
+
+        int getMinY() {
+            return Math.max(0, this.y - this.range);
+        }
+
+        int getMinZ() {
+            return this.z - this.range;
+        }
+
+        int getMaxX() {
+            return this.x + this.range;
+        }
+
+        int getMaxY() {
+            return Math.min(this.y + this.range, 15);
+        }
+
+        int getMaxZ() {
+            return this.z + this.range;
+        }
+
+        @Override
+        public String toString() {
+            return SectionPos.of(this.x, this.y, this.z) + " with cube radius: " + this.range;
+        }
+    }
+
+    private static class PendingMove {
+        // Where the entity was tracked before its first recorded change
+        private final long from;
+        // Where the entity is after its last recorded change
+        private long to;
+
+        private PendingMove(long from) {
+            this.from = from;
+            this.to = from;
+        }
+    }
+
 
-    private static String errorMessageAlreadyListening(Reference2ReferenceOpenHashMap<NearbyEntityListener, List<TrackedEntityList>> sectionsByEntity, NearbyEntityListener listener, SectionPos newLocation) {
+    private static String errorMessageAlreadyListening(Reference2ReferenceOpenHashMap<NearbyEntityListener, ListenerArea> areasByListener, NearbyEntityListener listener, SectionPos newLocation) {
         StringBuilder builder = new StringBuilder();
         builder.append("Adding Entity listener a second time: ").append(listener.toString());
         builder.append("\n");
         builder.append(" wants to listen at: ").append(newLocation.toString());
         builder.append(" with cube radius: ").append(listener.getChunkRange());
         builder.append("\n");
-        builder.append(" but was already listening at chunk sections: ");
-        String[] comma = new String[]{""};
-        if (sectionsByEntity.get(listener) == null) {
-            builder.append("null");
-        } else {
-            sectionsByEntity.get(listener).forEach(a -> {
-                builder.append(comma[0]);
-                builder.append(decode(a.key).toString());
-                comma[0] = ", ";
-            });
-        }
+        builder.append(" but was already listening around chunk section: ");
+        builder.append(areasByListener.get(listener));
         return builder.toString();
     }
 }
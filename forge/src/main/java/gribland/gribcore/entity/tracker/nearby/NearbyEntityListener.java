@@ -23,4 +23,18 @@ public interface NearbyEntityListener {
      * Called by the entity tracker when an entity leaves the range of this listener or is removed from the world.
      */
     void onEntityLeftRange(LivingEntity entity);
+
+    /**
+     * Called by the entity tracker when an entity moves to another chunk section while staying within the range of this
+     * listener.
+     */
+    default void onEntityMovedInRange(LivingEntity entity) {
+    }
+
+    /**
+     * Called by the entity tracker when the entity owning this listener moves to another chunk section or is removed
+     * from the world.
+     */
+    default void onOwnerSectionChanged(EntityTrackerEngine engine) {
+    }
 }
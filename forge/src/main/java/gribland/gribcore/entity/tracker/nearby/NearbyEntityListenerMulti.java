@@ -1,5 +1,6 @@
 package gribland.gribcore.entity.tracker.nearby;
 
+import gribland.gribcore.entity.tracker.EntityTrackerEngine;
 import net.minecraft.world.entity.LivingEntity;
 
 import java.util.ArrayList;
@@ -45,6 +46,20 @@ public class NearbyEntityListenerMulti implements NearbyEntityListener {
         }
     }
 
+    @Override
+    public void onEntityMovedInRange(LivingEntity entity) {
+        for (NearbyEntityListener listener : this.listeners) {
+            listener.onEntityMovedInRange(entity);
+        }
+    }
+
+    @Override
+    public void onOwnerSectionChanged(EntityTrackerEngine engine) {
+        for (NearbyEntityListener listener : this.listeners) {
+            listener.onOwnerSectionChanged(engine);
+        }
+    }
+
     @Override
     public String toString() {
         StringBuilder sublisteners = new StringBuilder();
@@ -1,59 +1,91 @@
 package gribland.gribcore.entity.tracker.nearby;
 
-import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
+import gribland.gribcore.config.GribCoreConfig;
+import gribland.gribcore.entity.tracker.EntityTrackerEngine;
+import gribland.gribcore.entity.tracker.EntityTrackerEngineProvider;
+import gribland.gribcore.lithium.common.entity.tracker.SectionEntityIndex;
 import net.minecraft.nbt.CompoundTag;
 import net.minecraft.util.Mth;
+import net.minecraft.world.entity.Entity;
 import net.minecraft.world.entity.LivingEntity;
 import net.minecraft.world.entity.ai.targeting.TargetingConditions;
 import net.minecraft.world.phys.AABB;
 
-import java.util.Set;
+import java.util.function.Predicate;
 
 /**
  * Maintains a collection of all entities within the range of this listener. This allows AI goals to quickly
  * assess nearby entities which match the provided class.
+ *
+ * If listeners are shared, the tracker does not keep a collection of its own. It is not registered with the entity
+ * tracker at all, and instead queries the {@link SharedNearbyEntityGroup} of its owner's section, which it joins when
+ * it is first queried and leaves when its owner changes sections.
  */
 public class NearbyEntityTracker<T extends LivingEntity> implements NearbyEntityListener {
+    private static final boolean SHARED = GribCoreConfig.LITHIUM_SHARED_ENTITY_LISTENERS;
+
     private final Class<T> clazz;
     private final LivingEntity self;
 
     private final int rangeC;
     private final float rangeSq;
 
-    private final Set<T> nearby = new ReferenceOpenHashSet<>();
+    private final SectionEntityIndex<T> nearby;
+
+    private SharedNearbyEntityGroup group;
 
     public NearbyEntityTracker(Class<T> clazz, LivingEntity self, float range) {
         this.clazz = clazz;
         this.self = self;
         this.rangeSq = range * range;
         this.rangeC = Math.max((Mth.ceil(range) + 15) >> 4, 1);
+        this.nearby = SHARED ? null : new SectionEntityIndex<>(Entity::distanceToSqr);
     }
 
     @Override
     public int getChunkRange() {
-        return this.rangeC;
+        // Shared trackers receive entities through their group instead
+        return SHARED ? 0 : this.rangeC;
     }
 
     @SuppressWarnings("unchecked")
     @Override
     public void onEntityEnteredRange(LivingEntity entity) {
-        if (!this.clazz.isInstance(entity)) {
+        if (SHARED || !this.clazz.isInstance(entity)) {
             return;
         }
 
-        this.nearby.add((T) entity);
+        this.nearby.add((T) entity, SharedNearbyEntityGroup.getSection(entity));
     }
 
     @SuppressWarnings("unchecked")
     @Override
     public void onEntityLeftRange(LivingEntity entity) {
-        if (this.nearby.isEmpty() || !this.clazz.isInstance(entity)) {
+        if (SHARED || this.nearby.isEmpty() || !this.clazz.isInstance(entity)) {
             return;
         }
 
         this.nearby.remove((T) entity);
     }
 
+    @SuppressWarnings("unchecked")
+    @Override
+    public void onEntityMovedInRange(LivingEntity entity) {
+        if (SHARED || this.nearby.isEmpty() || !this.clazz.isInstance(entity)) {
+            return;
+        }
+
+        this.nearby.move((T) entity, SharedNearbyEntityGroup.getSection(entity));
+    }
+
+    @Override
+    public void onOwnerSectionChanged(EntityTrackerEngine engine) {
+        if (this.group != null) {
+            engine.leaveSharedGroup(this.group);
+            this.group = null;
+        }
+    }
+
     /**
      * Gets the closest T (extends LivingEntity) to the center of this tracker that also intersects with the given box and meets the
      * requirements of the targetPredicate.
@@ -64,27 +96,30 @@ public class NearbyEntityTracker<T extends LivingEntity> implements NearbyEntity
      * @return the closest Entity that meets all requirements (distance, box intersection, predicate, type T)
      */
     public T getClosestEntity(AABB box, TargetingConditions targetPredicate) {
-        double x = this.self.getX();
-        double y = this.self.getY();
-        double z = this.self.getZ();
+        EntityTrackerEngine engine = EntityTrackerEngineProvider.gribcore$getEntityTracker(this.self.level);
 
-        T nearest = null;
-        double nearestDistance = Double.POSITIVE_INFINITY;
+        // Entities which moved since the last flush have not entered or left the range of this tracker yet
+        if (engine != null) {
+            engine.flushPendingMoves();
+        }
 
-        for (T entity : this.nearby) {
-            double distance = entity.distanceToSqr(x, y, z);
+        Predicate<LivingEntity> filter = entity -> entity != this.self && (box == null || box.intersects(entity.getBoundingBox())) && targetPredicate.test(this.self, entity);
 
-            if (distance < nearestDistance && (box == null || box.intersects(entity.getBoundingBox())) && targetPredicate.test(this.self, entity)) {
-                nearest = entity;
-                nearestDistance = distance;
-            }
+        // Only the entities in the sections closest to this entity are usually visited
+        if (!SHARED) {
+            return this.nearby.findClosest(this.self.getX(), this.self.getY(), this.self.getZ(), this.rangeSq, filter);
         }
 
-        if (nearestDistance <= this.rangeSq) {
-            return nearest;
+        if (this.group == null) {
+            if (engine == null) {
+                return null;
+            }
+
+            this.group = engine.joinSharedGroup(SharedNearbyEntityGroup.getSection(this.self), this.clazz, this.rangeC);
         }
 
-        return null;
+        // The candidates of the group are only filtered by class, the range of this tracker is checked here
+        return this.clazz.cast(this.group.getCandidates().findClosest(this.self.getX(), this.self.getY(), this.self.getZ(), this.rangeSq, filter));
     }
 
     @Override
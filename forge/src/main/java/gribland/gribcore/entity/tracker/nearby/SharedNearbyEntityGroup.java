@@ -0,0 +1,100 @@
+package gribland.gribcore.entity.tracker.nearby;
+
+import gribland.gribcore.entity.tracker.EntityTrackerEngine;
+import gribland.gribcore.lithium.common.entity.tracker.SectionEntityIndex;
+import net.minecraft.core.SectionPos;
+import net.minecraft.world.entity.Entity;
+import net.minecraft.world.entity.LivingEntity;
+
+/**
+ * A single listener registration shared by every {@link NearbyEntityTracker} with the same entity class and chunk range
+ * whose owner is in the same chunk section. All of them would have been registered for exactly the same sections, so
+ * they would have received exactly the same entities. The members only differ in their position and range, which are
+ * checked when they query the shared candidates.
+ *
+ * Groups are created and removed by {@link EntityTrackerEngine#joinSharedGroup(long, Class, int)}.
+ */
+public class SharedNearbyEntityGroup implements NearbyEntityListener {
+    private final long section;
+    private final Class<?> clazz;
+    private final int range;
+
+    private final SectionEntityIndex<LivingEntity> candidates = new SectionEntityIndex<>(Entity::distanceToSqr);
+
+    private int members;
+
+    // The next group in the same section
+    private SharedNearbyEntityGroup next;
+
+    public SharedNearbyEntityGroup(long section, Class<?> clazz, int range) {
+        this.section = section;
+        this.clazz = clazz;
+        this.range = range;
+    }
+
+    public boolean matches(Class<?> clazz, int range) {
+        return this.clazz == clazz && this.range == range;
+    }
+
+    public long getSection() {
+        return this.section;
+    }
+
+    public SharedNearbyEntityGroup getNext() {
+        return this.next;
+    }
+
+    public void setNext(SharedNearbyEntityGroup next) {
+        this.next = next;
+    }
+
+    public void addMember() {
+        this.members++;
+    }
+
+    /**
+     * @return true if this was the last member, and the group should be removed
+     */
+    public boolean removeMember() {
+        return --this.members <= 0;
+    }
+
+    public SectionEntityIndex<LivingEntity> getCandidates() {
+        return this.candidates;
+    }
+
+    @Override
+    public int getChunkRange() {
+        return this.range;
+    }
+
+    @Override
+    public void onEntityEnteredRange(LivingEntity entity) {
+        if (this.clazz.isInstance(entity)) {
+            this.candidates.add(entity, getSection(entity));
+        }
+    }
+
+    @Override
+    public void onEntityLeftRange(LivingEntity entity) {
+        if (!this.candidates.isEmpty() && this.clazz.isInstance(entity)) {
+            this.candidates.remove(entity);
+        }
+    }
+
+    @Override
+    public void onEntityMovedInRange(LivingEntity entity) {
+        if (!this.candidates.isEmpty() && this.clazz.isInstance(entity)) {
+            this.candidates.move(entity, getSection(entity));
+        }
+    }
+
+    static long getSection(LivingEntity entity) {
+        return SectionPos.asLong(entity.xChunk, entity.yChunk, entity.zChunk);
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() + " for entity class: " + this.clazz.getName() + ", in chunk range: " + this.range + ", around section: " + SectionPos.of(this.section) + " with " + this.members + " members";
+    }
+}
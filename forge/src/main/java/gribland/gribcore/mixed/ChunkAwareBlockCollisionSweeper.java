@@ -120,7 +120,7 @@ public class ChunkAwareBlockCollisionSweeper {
                 //skip empty chunks and empty chunk sections
             } while (this.cachedChunk == null || LevelChunkSection.isEmpty(this.cachedChunkSection));
 
-            this.sectionOversizedBlocks = hasChunkSectionOversizedBlocks(this.cachedChunk, this.chunkY);
+            this.sectionOversizedBlocks = hasChunkSectionOversizedBlocks(this.cachedChunkSection);
 
             int sizeExtension = this.sectionOversizedBlocks ? 1 : 0;
 
@@ -218,7 +218,7 @@ public class ChunkAwareBlockCollisionSweeper {
                 continue;
             }
 
-            VoxelShape collisionShape = state.getCollisionShape(this.view, this.pos, this.context);
+            VoxelShape collisionShape = getCollisionShape(state, this.view, this.pos, this.context);
 
             if (collisionShape != Shapes.empty()) {
                 VoxelShape collidedShape = getCollidedShape(this.box, this.shape, collisionShape, x, y, z);
@@ -231,6 +231,19 @@ public class ChunkAwareBlockCollisionSweeper {
         return null;
     }
 
+    /**
+     * Most blocks an entity touches are full cubes, for which the shared full cube shape is returned without asking the
+     * block. The full cube flag is cached in the block state for every block without a dynamic shape. Like the
+     * context-free shape queries in vanilla, this trusts that cache to also describe the shape for the given context.
+     */
+    private static VoxelShape getCollisionShape(BlockState state, CollisionGetter view, BlockPos pos, CollisionContext context) {
+        if (!state.getBlock().hasDynamicShape() && state.isCollisionShapeFullBlock(view, pos)) {
+            return Shapes.block();
+        }
+
+        return state.getCollisionShape(view, pos, context);
+    }
+
     private VoxelShape getNextEntityCollision() {
         if (LithiumEntityCollisions.canEntityCollideWithWorldBorder(this.view, this.entity)) {
             return this.view.getWorldBorder().getCollisionShape();
@@ -275,13 +288,12 @@ public class ChunkAwareBlockCollisionSweeper {
     }
 
     /**
-     * Checks the cached information whether the {@param chunkY} section of the {@param chunk} has oversized blocks.
+     * Checks the cached information whether the {@param section} has oversized blocks.
      *
      * @return Whether there are any oversized blocks in the chunk section.
      */
-    private static boolean hasChunkSectionOversizedBlocks(LevelChunk chunk, int chunkY) {
+    private static boolean hasChunkSectionOversizedBlocks(LevelChunkSection section) {
         if (OVERSIZED_BLOCK_COUNTING_ENABLED) {
-            LevelChunkSection section = chunk.getSections()[chunkY];
             return section != null && ((OversizedBlocksCounter) section).hasOversizedBlocks();
         }
         return true; //like vanilla, assume that a chunk section has oversized blocks, when the section mixin isn't loaded
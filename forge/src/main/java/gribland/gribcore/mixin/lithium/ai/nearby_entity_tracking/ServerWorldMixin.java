@@ -8,15 +8,26 @@ import net.minecraft.world.entity.Entity;
 import net.minecraft.world.entity.LivingEntity;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.Redirect;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 
 import java.util.Iterator;
+import java.util.function.BooleanSupplier;
 
 /**
  * Installs event listeners to the world class which will be used to notify the {@link EntityTrackerEngine} of changes.
  */
 @Mixin(ServerLevel.class)
 public class ServerWorldMixin {
+    /**
+     * Deliver the entity moves recorded during the previous tick before any entity runs its AI.
+     */
+    @Inject(method = "tick", at = @At("HEAD"))
+    private void flushEntityTracker(BooleanSupplier shouldKeepTicking, CallbackInfo ci) {
+        EntityTrackerEngineProvider.gribcore$getEntityTracker(this).flushPendingMoves();
+    }
+
     /**
      * Notify the entity tracker when an entity is removed from the world.
      */
@@ -2,6 +2,7 @@ package gribland.gribcore.mixin.lithium.world.chunk_access;
 
 import com.mojang.datafixers.util.Either;
 import gribland.gribcore.lithium.common.world.chunk.ChunkHolderExtended;
+import gribland.gribcore.lithium.common.world.scheduler.RegionTickExecutor;
 import net.minecraft.Util;
 import net.minecraft.server.level.*;
 import net.minecraft.world.level.ChunkPos;
@@ -92,9 +93,43 @@ public abstract class ServerChunkManagerMixin {
     }
 
     private ChunkAccess getChunkOffThread(int x, int z, ChunkStatus status, boolean create) {
+        if (RegionTickExecutor.isWorkerThread()) {
+            // The server thread is waiting for the tick workers, so it can only run requests submitted to the executor
+            // which it is waiting in
+            ChunkAccess chunk = this.getChunkIfLoaded(x, z, status);
+
+            if (chunk != null) {
+                return chunk;
+            }
+
+            return CompletableFuture.supplyAsync(() -> this.getChunk(x, z, status, create), RegionTickExecutor.getMainThreadExecutor()).join();
+        }
+
         return CompletableFuture.supplyAsync(() -> this.getChunk(x, z, status, create), this.mainThreadProcessor).join();
     }
 
+    /**
+     * Returns the chunk if it has already reached the given status, without going through the server thread. The map of
+     * visible chunk holders is only ever replaced as a whole, so it can be read from any thread.
+     */
+    private ChunkAccess getChunkIfLoaded(int x, int z, ChunkStatus status) {
+        ChunkHolder holder = this.getVisibleChunkIfPresent(ChunkPos.asLong(x, z));
+
+        if (holder == null) {
+            return null;
+        }
+
+        CompletableFuture<Either<ChunkAccess, ChunkHolder.ChunkLoadingFailure>> future = ((ChunkHolderExtended) holder).getFutureByStatus(status.getIndex());
+
+        if (future == null) {
+            return null;
+        }
+
+        Either<ChunkAccess, ChunkHolder.ChunkLoadingFailure> result = future.getNow(null);
+
+        return result == null ? null : result.left().orElse(null);
+    }
+
     /**
      * Retrieves a chunk from the storages, blocking to work on other tasks if the requested chunk needs to be loaded
      * from disk or generated in real-time.
@@ -0,0 +1,24 @@
+package gribland.gribcore.mixin.lithium.world.tick_scheduler;
+
+import gribland.gribcore.lithium.common.world.scheduler.RegionTickExecutor;
+import net.minecraft.util.profiling.InactiveProfiler;
+import net.minecraft.util.profiling.ProfilerFiller;
+import net.minecraft.world.level.Level;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+
+@Mixin(Level.class)
+public abstract class WorldMixin {
+    /**
+     * The profiler of the server keeps a single stack of sections, which the region workers would push to and pop from
+     * concurrently with each other. Ticks executing on a worker are not profiled instead.
+     */
+    @Inject(method = "getProfiler", at = @At("HEAD"), cancellable = true)
+    private void getWorkerProfiler(CallbackInfoReturnable<ProfilerFiller> cir) {
+        if (RegionTickExecutor.isWorkerThread()) {
+            cir.setReturnValue(InactiveProfiler.INSTANCE);
+        }
+    }
+}